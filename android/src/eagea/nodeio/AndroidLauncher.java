@@ -1,16 +1,54 @@
 package eagea.nodeio;
 
 import android.os.Bundle;
+import android.util.Log;
 
 import com.badlogic.gdx.backends.android.AndroidApplication;
 import com.badlogic.gdx.backends.android.AndroidApplicationConfiguration;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import eagea.nodeio.metrics.Metrics;
+
 public class AndroidLauncher extends AndroidApplication
 {
+	// No JMX on Android: dump the metrics in logcat periodically.
+	private static final long METRICS_DUMP_PERIOD = 60;
+
+	private ScheduledExecutorService mMetricsDumper;
+
 	@Override
 	protected void onCreate (Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		AndroidApplicationConfiguration config = new AndroidApplicationConfiguration();
+		// Logs go to logcat.
+		eagea.nodeio.log.Log.setOutput((level, category, line) ->
+		{
+			switch (level)
+			{
+				case ERROR: Log.e("Node.io", line); break;
+				case INFO: Log.i("Node.io", line); break;
+				default: Log.d("Node.io", line); break;
+			}
+		});
 		initialize(new Main(), config);
+		// Metrics.
+		mMetricsDumper = Executors.newSingleThreadScheduledExecutor(r ->
+		{
+			Thread thread = new Thread(r, "metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		mMetricsDumper.scheduleAtFixedRate(() -> Log.i("Node.io", Metrics.dump()),
+				METRICS_DUMP_PERIOD, METRICS_DUMP_PERIOD, TimeUnit.SECONDS);
+	}
+
+	@Override
+	protected void onDestroy()
+	{
+		mMetricsDumper.shutdownNow();
+		super.onDestroy();
 	}
 }
\ No newline at end of file
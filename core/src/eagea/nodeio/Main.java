@@ -6,13 +6,8 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.utils.viewport.FillViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 
-import java.io.OutputStream;
-import java.io.PrintStream;
-
 public class Main extends Game
 {
-    public final boolean DEBUG = true;
-
     public static final int WORLD_WIDTH = 30;
     public static final int WORLD_HEIGHT = 30;
 
@@ -25,7 +20,6 @@ public class Main extends Game
     @Override
     public void create ()
     {
-        DEBUG();
         // GDX objects.
         mBatch = new SpriteBatch();
         mCamera = new OrthographicCamera(WORLD_WIDTH, WORLD_HEIGHT);
@@ -64,24 +58,4 @@ public class Main extends Game
         super.pause();
         mScreen.onResume();
     }
-
-    public void DEBUG()
-    {
-        if (! DEBUG)
-        {
-            // Disable all logs.
-            System.setOut(new PrintStream(new OutputStream()
-                    {
-                        @Override public void write(int b) { }
-                    }
-                )
-            );
-            System.setErr(new PrintStream(new OutputStream()
-                    {
-                        @Override public void write(int b) { }
-                    }
-                )
-            );
-        }
-    }
 }
\ No newline at end of file
@@ -55,6 +55,8 @@ public class Screen extends ScreenAdapter
         mModel = new Model(this);
         mView = new View(mModel);
         mController = new Controller(mModel, mView);
+        // Connect while the menu shows.
+        mModel.prewarm();
         // Sounds.
         mFootStepSound = Gdx.audio.newSound(Gdx.files.internal("sounds/footstep.ogg"));
         mCatchSound = Gdx.audio.newSound(Gdx.files.internal("sounds/catch.wav"));
@@ -102,14 +104,21 @@ public class Screen extends ScreenAdapter
         {
             // Can't stop game music (android bug), so mute it.
             mGameMusic.setVolume(0f);
-            // Close the connection.
+            // Keep our place in the game for a while (see Model.suspend).
             // -> No networking on main thread (android policy).
-            new Thread(() -> mModel.shutDownHook()).start();
+            new Thread(() -> mModel.suspend()).start();
         }
     }
 
     public void onResume()
     {
+        if (mModel != null && mModel.isSuspended())
+        {
+            // Back in the game.
+            mGameMusic.setVolume(GAME_MUSIC_VOLUME);
+            new Thread(() -> mModel.resume()).start();
+            return;
+        }
         // Switch for menu music.
         Screen.startMenuMusic();
     }
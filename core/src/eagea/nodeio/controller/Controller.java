@@ -92,8 +92,21 @@ public class Controller implements InputProcessor
     @Override
     public boolean touchDown(int screenX, int screenY, int pointer, int button)
     {
+        Vector2 world = Main.mViewPortGame.unproject(new Vector2(screenX, screenY));
         // Check if HUD touched.
-        return mView.isTouched(Main.mViewPortGame.unproject(new Vector2(screenX, screenY)));
+        if (mView.isTouched(world))
+        {
+            return true;
+        }
+        // Otherwise walk to the touched cell.
+        if (mModel.getState() != Model.State.GAME || mModel.getPlayer() == null)
+        {
+            return false;
+        }
+
+        mModel.askForPath(View.getCell(mModel.getPlayer().getMapPosition(), world));
+
+        return true;
     }
 
     @Override
@@ -0,0 +1,143 @@
+package eagea.nodeio.log;
+
+/**
+ * Leveled logging facade.
+ * The level check is a single array read, so disabled logs cost nothing:
+ * pass the variable part as an argument instead of concatenating it, it is
+ * only formatted (on the background thread of LogBuffer) if the log is enabled.
+ * Levels can be changed at runtime per category, and are initialised from the
+ * "nodeio.log" (all categories) and "nodeio.log.[category]" system properties
+ * (e.g. -Dnodeio.log.network=DEBUG).
+ */
+public class Log
+{
+    public enum Level { DEBUG, INFO, ERROR, OFF }
+    public enum Category { NETWORK, HOST, MODEL, VIEW, APP }
+
+    /**
+     * Where formatted lines end up.
+     */
+    public interface Output
+    {
+        void write(Level level, Category category, String line);
+    }
+
+    private static final Level DEFAULT_LEVEL = Level.INFO;
+    private static final int BUFFER_SIZE = 1024;
+    // Longest wait for the pending logs to be written (ms).
+    private static final long FLUSH_TIMEOUT = 1000;
+
+    // Minimal level ordinal per category.
+    private static final int[] mLevels = new int[Category.values().length];
+    private static final LogBuffer mBuffer = new LogBuffer(BUFFER_SIZE);
+
+    static
+    {
+        Level global = parse(System.getProperty("nodeio.log"), DEFAULT_LEVEL);
+
+        for (Category category : Category.values())
+        {
+            setLevel(category, parse(System.getProperty("nodeio.log."
+                    + category.name().toLowerCase()), global));
+        }
+        // The background thread is a daemon: write what is left on exit.
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() { }
+
+    public static void setLevel(Category category, Level level)
+    {
+        mLevels[category.ordinal()] = level.ordinal();
+    }
+
+    public static void setLevel(Level level)
+    {
+        for (Category category : Category.values())
+        {
+            setLevel(category, level);
+        }
+    }
+
+    public static Level getLevel(Category category)
+    {
+        return Level.values()[mLevels[category.ordinal()]];
+    }
+
+    public static void setOutput(Output output)
+    {
+        mBuffer.setOutput(output);
+    }
+
+    /**
+     * Wait until the logs so far are written (e.g. before System.exit).
+     */
+    public static void flush()
+    {
+        mBuffer.flush(FLUSH_TIMEOUT);
+    }
+
+    public static boolean isEnabled(Category category, Level level)
+    {
+        return level.ordinal() >= mLevels[category.ordinal()];
+    }
+
+    public static void debug(Category category, String message)
+    {
+        log(Level.DEBUG, category, message, null);
+    }
+
+    public static void debug(Category category, String message, Object arg)
+    {
+        log(Level.DEBUG, category, message, arg);
+    }
+
+    public static void info(Category category, String message)
+    {
+        log(Level.INFO, category, message, null);
+    }
+
+    public static void info(Category category, String message, Object arg)
+    {
+        log(Level.INFO, category, message, arg);
+    }
+
+    public static void error(Category category, String message)
+    {
+        log(Level.ERROR, category, message, null);
+    }
+
+    /**
+     * @param arg appended to the message; if it is a Throwable, its stack
+     *            trace is printed too.
+     */
+    public static void error(Category category, String message, Object arg)
+    {
+        log(Level.ERROR, category, message, arg);
+    }
+
+    private static void log(Level level, Category category, String message, Object arg)
+    {
+        if (isEnabled(category, level))
+        {
+            mBuffer.put(level, category, message, arg);
+        }
+    }
+
+    private static Level parse(String value, Level fallback)
+    {
+        if (value == null)
+        {
+            return fallback;
+        }
+
+        try
+        {
+            return Level.valueOf(value.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return fallback;
+        }
+    }
+}
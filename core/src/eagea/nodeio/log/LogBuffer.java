@@ -0,0 +1,190 @@
+package eagea.nodeio.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Bounded ring of pre-allocated log entries, drained by a background thread
+ * which formats and writes them. Logging threads only copy references in a
+ * slot, so they never block on console I/O. When the ring is full, entries
+ * are dropped (and counted) rather than slowing the game down.
+ */
+class LogBuffer
+{
+    private static class Entry
+    {
+        private Log.Level mLevel;
+        private Log.Category mCategory;
+        private String mMessage;
+        private Object mArg;
+    }
+
+    private final Entry[] mEntries;
+    // Next entry to write, and to read (monotonic).
+    private long mHead;
+    private long mTail;
+    // Number of entries lost because the ring was full.
+    private long mDropped;
+    // Entries written by the background thread (monotonic).
+    private long mWritten;
+    private volatile Log.Output mOutput;
+
+    LogBuffer(int size)
+    {
+        mEntries = new Entry[size];
+
+        for (int i = 0; i < size; i ++)
+        {
+            mEntries[i] = new Entry();
+        }
+
+        mOutput = (level, category, line) ->
+        {
+            if (level == Log.Level.ERROR)
+            {
+                System.err.println(line);
+            }
+            else
+            {
+                System.out.println(line);
+            }
+        };
+
+        Thread thread = new Thread(this::drain, "log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void setOutput(Log.Output output)
+    {
+        mOutput = output;
+    }
+
+    synchronized void put(Log.Level level, Log.Category category, String message, Object arg)
+    {
+        if (mHead - mTail == mEntries.length)
+        {
+            mDropped ++;
+            return;
+        }
+
+        Entry entry = mEntries[(int) (mHead % mEntries.length)];
+        entry.mLevel = level;
+        entry.mCategory = category;
+        entry.mMessage = message;
+        entry.mArg = arg;
+
+        if (mHead ++ == mTail)
+        {
+            // Was empty: wake the drain thread up (and not only a flush).
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the entries put so far are written, at most timeout ms.
+     */
+    synchronized void flush(long timeout)
+    {
+        long target = mHead;
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (mWritten < target)
+        {
+            long left = deadline - System.currentTimeMillis();
+
+            if (left <= 0)
+            {
+                return;
+            }
+
+            try
+            {
+                wait(left);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void drain()
+    {
+        while (true)
+        {
+            Log.Level level;
+            Log.Category category;
+            String message;
+            Object arg;
+            long dropped;
+            long written;
+
+            synchronized (this)
+            {
+                while (mHead == mTail)
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                }
+                // Copy the entry and release its slot.
+                Entry entry = mEntries[(int) (mTail % mEntries.length)];
+                level = entry.mLevel;
+                category = entry.mCategory;
+                message = entry.mMessage;
+                arg = entry.mArg;
+                entry.mMessage = null;
+                entry.mArg = null;
+                written = ++ mTail;
+                dropped = mDropped;
+                mDropped = 0;
+            }
+
+            if (dropped > 0)
+            {
+                mOutput.write(Log.Level.ERROR, Log.Category.APP,
+                        "[ERROR][APP]: " + dropped + " logs dropped");
+            }
+
+            mOutput.write(level, category, format(level, category, message, arg));
+
+            synchronized (this)
+            {
+                mWritten = written;
+                notifyAll();
+            }
+        }
+    }
+
+    private static String format(Log.Level level, Log.Category category, String message,
+                                 Object arg)
+    {
+        StringBuilder builder = new StringBuilder()
+                .append('[').append(level).append("][").append(category).append("]: ")
+                .append(message);
+
+        if (arg instanceof Class)
+        {
+            builder.append(' ').append(((Class<?>) arg).getSimpleName());
+        }
+        else if (arg instanceof Throwable)
+        {
+            StringWriter trace = new StringWriter();
+            ((Throwable) arg).printStackTrace(new PrintWriter(trace));
+            builder.append('\n').append(trace);
+        }
+        else if (arg != null)
+        {
+            builder.append(' ').append(arg);
+        }
+
+        return builder.toString();
+    }
+}
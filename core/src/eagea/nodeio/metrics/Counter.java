@@ -0,0 +1,31 @@
+package eagea.nodeio.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonic count of events (e.g. actions sent, errors).
+ */
+public class Counter
+{
+    private final AtomicLong mCount;
+
+    Counter()
+    {
+        mCount = new AtomicLong();
+    }
+
+    public void increment()
+    {
+        mCount.incrementAndGet();
+    }
+
+    public void add(long n)
+    {
+        mCount.addAndGet(n);
+    }
+
+    public long get()
+    {
+        return mCount.get();
+    }
+}
@@ -0,0 +1,9 @@
+package eagea.nodeio.metrics;
+
+/**
+ * A value sampled on demand (e.g. number of players in the game).
+ */
+public interface Gauge
+{
+    long get();
+}
@@ -0,0 +1,160 @@
+package eagea.nodeio.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of recorded values (latencies in nanoseconds, sizes in bytes).
+ * Buckets are log-linear like an HDR histogram: each power of two is split
+ * in SUB_BUCKETS / 2 linear buckets, so the relative error stays under
+ * 2 / SUB_BUCKETS whatever the magnitude, with a fixed memory footprint.
+ * Recording is lock-free and allocation-free.
+ */
+public class Histogram
+{
+    // Precision: 2^SUB_BITS linear buckets per power of two (~3% error).
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int NB_BUCKETS = (64 - SUB_BITS + 1) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mCount;
+    private final AtomicLong mSum;
+    private final AtomicLong mMax;
+
+    Histogram()
+    {
+        mCounts = new AtomicLongArray(NB_BUCKETS);
+        mCount = new AtomicLong();
+        mSum = new AtomicLong();
+        mMax = new AtomicLong();
+    }
+
+    /**
+     * Record a value (negative ones are clamped to 0).
+     */
+    public void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+
+        mCounts.incrementAndGet(indexOf(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        // Keep the maximum.
+        long max = mMax.get();
+
+        while (value > max && ! mMax.compareAndSet(max, value))
+        {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Record the time elapsed since start (from System.nanoTime()).
+     */
+    public void recordSince(long start)
+    {
+        record(System.nanoTime() - start);
+    }
+
+    public Snapshot snapshot()
+    {
+        long[] counts = new long[NB_BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < NB_BUCKETS; i ++)
+        {
+            counts[i] = mCounts.get(i);
+            count += counts[i];
+        }
+
+        return new Snapshot(count, mSum.get(), mMax.get(),
+                valueAt(counts, count, 0.50),
+                valueAt(counts, count, 0.90),
+                valueAt(counts, count, 0.99));
+    }
+
+    private static int indexOf(long value)
+    {
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = Math.max(0, msb - (SUB_BITS - 1));
+
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long valueOf(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        int shift = index / HALF_SUB_BUCKETS - 1;
+
+        return (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+    }
+
+    private static long valueAt(long[] counts, long count, double quantile)
+    {
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i ++)
+        {
+            seen += counts[i];
+
+            if (seen >= rank && seen > 0)
+            {
+                return valueOf(i);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Immutable view of the histogram at a given time.
+     */
+    public static class Snapshot
+    {
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+        private final long mP50;
+        private final long mP90;
+        private final long mP99;
+
+        Snapshot(long count, long sum, long max, long p50, long p90, long p99)
+        {
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+            mP50 = p50;
+            mP90 = p90;
+            mP99 = p99;
+        }
+
+        public long getCount() { return mCount; }
+
+        public long getMean() { return mCount == 0 ? 0 : mSum / mCount; }
+
+        public long getMax() { return mMax; }
+
+        public long getP50() { return mP50; }
+
+        public long getP90() { return mP90; }
+
+        public long getP99() { return mP99; }
+
+        @Override
+        public String toString()
+        {
+            return "count=" + mCount + " mean=" + getMean() + " p50=" + mP50
+                    + " p90=" + mP90 + " p99=" + mP99 + " max=" + mMax;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package eagea.nodeio.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide registry of counters, gauges and histograms.
+ * Metrics are created once (keep a reference in a static field) and then
+ * updated on the hot paths without any allocation. Latencies are recorded in
+ * nanoseconds ("*.ns" names), sizes in bytes ("*.bytes" names).
+ */
+public class Metrics
+{
+    private static final Map<String, Counter> mCounters = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> mGauges = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+
+    private Metrics() { }
+
+    public static Counter counter(String name)
+    {
+        return mCounters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static Histogram histogram(String name)
+    {
+        return mHistograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Register (or replace) the gauge with the given name.
+     */
+    public static void gauge(String name, Gauge gauge)
+    {
+        mGauges.put(name, gauge);
+    }
+
+    public static Map<String, Long> getCounters()
+    {
+        Map<String, Long> result = new TreeMap<>();
+        mCounters.forEach((n, c) -> result.put(n, c.get()));
+
+        return result;
+    }
+
+    public static Map<String, Long> getGauges()
+    {
+        Map<String, Long> result = new TreeMap<>();
+        mGauges.forEach((n, g) -> result.put(n, g.get()));
+
+        return result;
+    }
+
+    public static Map<String, Histogram.Snapshot> getHistograms()
+    {
+        Map<String, Histogram.Snapshot> result = new TreeMap<>();
+        mHistograms.forEach((n, h) -> result.put(n, h.snapshot()));
+
+        return result;
+    }
+
+    /**
+     * @return a human readable snapshot of all the metrics, one per line.
+     */
+    public static String dump()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        getCounters().forEach((n, v) -> builder.append(n).append(' ').append(v).append('\n'));
+        getGauges().forEach((n, v) -> builder.append(n).append(' ').append(v).append('\n'));
+        getHistograms().forEach((n, s) -> builder.append(n).append(' ').append(s).append('\n'));
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,217 @@
+package eagea.nodeio.model;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.metrics.Counter;
+import eagea.nodeio.metrics.Histogram;
+import eagea.nodeio.metrics.Metrics;
+import eagea.nodeio.model.rabbitmq.Node;
+
+/**
+ * Start a game off the render thread, by stages: connect to RabbitMQ, ask
+ * the matchmaker for a room (optional), find out if the room has a host, and
+ * join it. The model stays in the STARTING state meanwhile (see getStage).
+ * Each stage has its own timeout ("nodeio.join.timeout.[stage]" system
+ * properties, in ms) and timing ("join.[stage].ns" metrics); if one fails,
+ * the player is back to the menu.
+ */
+public class JoinPipeline
+{
+    public enum Stage { CONNECTING, MATCHMAKING, FINDING_HOST, JOINING }
+
+    private static final long[] TIMEOUTS = new long[Stage.values().length];
+    // Finding the host waits for the host discovery, plus its queue
+    // declarations.
+    private static final long[] DEFAULT_TIMEOUTS =
+            { 15000, 5000, Node.HOST_DISCOVERY_TIME + 2000, 10000 };
+
+    // Metrics.
+    private static final Histogram[] TIMES = new Histogram[Stage.values().length];
+    private static final Counter[] TIMEOUT_COUNTS = new Counter[Stage.values().length];
+    private static final Histogram TOTAL = Metrics.histogram("join.total.ns");
+    private static final Counter FAILURES = Metrics.counter("join.failures");
+    private static final Histogram PREWARM = Metrics.histogram("join.prewarm.ns");
+
+    static
+    {
+        for (Stage stage : Stage.values())
+        {
+            String name = stage.name().toLowerCase();
+            TIMEOUTS[stage.ordinal()] = TimeUnit.MILLISECONDS.toNanos(Long.getLong(
+                    "nodeio.join.timeout." + name, DEFAULT_TIMEOUTS[stage.ordinal()]));
+            TIMES[stage.ordinal()] = Metrics.histogram("join." + name + ".ns");
+            TIMEOUT_COUNTS[stage.ordinal()] = Metrics.counter("join." + name + ".timeouts");
+        }
+    }
+
+    /**
+     * The work of a stage.
+     */
+    private interface Task
+    {
+        void run() throws Exception;
+    }
+
+    private final Model mModel;
+    private final Node mNode;
+    // Runs the pipeline, and the stages (so that they can be timed out).
+    private final ExecutorService mPipeline;
+    private final ExecutorService mStages;
+    // Released once the game model is received.
+    private volatile CountDownLatch mJoined;
+    private volatile Stage mStage;
+
+    public JoinPipeline(Model model, Node node)
+    {
+        mModel = model;
+        mNode = node;
+        mPipeline = Executors.newSingleThreadExecutor(r -> newThread(r, "join"));
+        mStages = Executors.newCachedThreadPool(r -> newThread(r, "join stage"));
+    }
+
+    /**
+     * @param matchmaking ask the matchmaker for a room first.
+     */
+    public void start(boolean matchmaking)
+    {
+        mJoined = new CountDownLatch(1);
+        mPipeline.execute(() -> run(matchmaking));
+    }
+
+    /**
+     * Connect and declare our queue while in the menu, so that starting a
+     * game does not wait for it (the stages of start come after).
+     */
+    public void prewarm()
+    {
+        mPipeline.execute(() ->
+                {
+                    long start = System.nanoTime();
+
+                    if (mNode.connect())
+                    {
+                        mNode.prepareQueue();
+                        PREWARM.recordSince(start);
+                    }
+                }
+        );
+    }
+
+    /**
+     * The game model is received (see Model.playConnection).
+     */
+    public void onJoined()
+    {
+        CountDownLatch joined = mJoined;
+
+        if (joined != null)
+        {
+            joined.countDown();
+        }
+    }
+
+    /**
+     * @return the stage in progress, or null if none.
+     */
+    public Stage getStage()
+    {
+        return mStage;
+    }
+
+    private void run(boolean matchmaking)
+    {
+        long start = System.nanoTime();
+        CountDownLatch joined = mJoined;
+
+        boolean done = stage(Stage.CONNECTING, () ->
+                {
+                    if (! mNode.connect())
+                    {
+                        throw new IllegalStateException("no connection");
+                    }
+                })
+                && (! matchmaking || stage(Stage.MATCHMAKING, () ->
+                {
+                    String room = mNode.findRoom();
+
+                    if (room != null)
+                    {
+                        mModel.setRoom(room);
+                    }
+                }))
+                && stage(Stage.FINDING_HOST, mNode::checkIfHost)
+                && stage(Stage.JOINING, () ->
+                {
+                    mModel.askForConnection();
+                    joined.await();
+                });
+
+        mStage = null;
+
+        if (done)
+        {
+            TOTAL.recordSince(start);
+            Log.info(Log.Category.NETWORK, "joined (ms)",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return;
+        }
+
+        FAILURES.increment();
+
+        if (mNode.isHost())
+        {
+            // Do not keep a room nobody plays in.
+            mNode.looseHost();
+        }
+
+        mModel.goToMenu();
+    }
+
+    /**
+     * Run a stage, waiting for it at most its timeout.
+     * @return false if it failed.
+     */
+    private boolean stage(Stage stage, Task task)
+    {
+        mStage = stage;
+        long start = System.nanoTime();
+        Future<?> future = mStages.submit(() ->
+                {
+                    task.run();
+                    return null;
+                }
+        );
+
+        try
+        {
+            future.get(TIMEOUTS[stage.ordinal()], TimeUnit.NANOSECONDS);
+            TIMES[stage.ordinal()].recordSince(start);
+            return true;
+        }
+        catch (TimeoutException e)
+        {
+            future.cancel(true);
+            TIMEOUT_COUNTS[stage.ordinal()].increment();
+            Log.error(Log.Category.NETWORK, "join timeout", stage);
+        }
+        catch (Exception e)
+        {
+            Log.error(Log.Category.NETWORK, "join " + stage, e);
+        }
+
+        return false;
+    }
+
+    private static Thread newThread(Runnable runnable, String name)
+    {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -2,14 +2,39 @@ package eagea.nodeio.model;
 
 import com.badlogic.gdx.math.Vector2;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import eagea.nodeio.Screen;
+import eagea.nodeio.log.Log;
+import eagea.nodeio.metrics.Counter;
+import eagea.nodeio.metrics.Histogram;
+import eagea.nodeio.metrics.Metrics;
+import eagea.nodeio.model.journal.Journal;
+import eagea.nodeio.model.logic.Dice;
+import eagea.nodeio.model.logic.MerkleTree;
+import eagea.nodeio.model.logic.StateHash;
 import eagea.nodeio.model.logic.map.CellM;
 import eagea.nodeio.model.logic.map.MapM;
+import eagea.nodeio.model.logic.map.PathFinder;
 import eagea.nodeio.model.logic.map.ZoneM;
 import eagea.nodeio.model.logic.player.PlayerM;
 import eagea.nodeio.model.logic.player.PlayersM;
+import eagea.nodeio.model.logic.player.PositionHistory;
 import eagea.nodeio.model.rabbitmq.Node;
 import eagea.nodeio.model.rabbitmq.action.Action;
 import eagea.nodeio.model.rabbitmq.action.Catch;
@@ -17,7 +42,15 @@ import eagea.nodeio.model.rabbitmq.action.Connection;
 import eagea.nodeio.model.rabbitmq.action.Disconnection;
 import eagea.nodeio.model.rabbitmq.action.HostChange;
 import eagea.nodeio.model.rabbitmq.action.Move;
+import eagea.nodeio.model.rabbitmq.action.PathMove;
+import eagea.nodeio.model.rabbitmq.action.PathStep;
+import eagea.nodeio.model.rabbitmq.action.Repair;
+import eagea.nodeio.model.rabbitmq.action.Resume;
 import eagea.nodeio.model.rabbitmq.action.Speak;
+import eagea.nodeio.model.rabbitmq.action.StateDigest;
+import eagea.nodeio.model.rabbitmq.action.Suspend;
+import eagea.nodeio.model.rabbitmq.action.Sync;
+import eagea.nodeio.model.rabbitmq.action.Tick;
 
 /**
  * Handle all the logic of the game, and the rabbitMQ communications with other
@@ -27,18 +60,144 @@ public class Model
 {
     // Current game state.
     public enum State { MENU, STARTING, GAME, CAUGHT }
+    // Levels of the state tree sent in digests (see MerkleTree).
+    private static final int DIGEST_LEVELS = Integer.getInteger("nodeio.digest.levels", 6);
+    // How far back in time a catch can be checked (ns), see checkCatch.
+    private static final long MAX_REWIND = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("nodeio.lag.rewind", 200));
+    // Show our own moves before the host validates them (see reconcile).
+    private static final boolean PREDICTION =
+            Boolean.parseBoolean(System.getProperty("nodeio.prediction", "true"));
+    // Predicted moves not answered after this are considered lost (ns).
+    private static final long PREDICTION_TIMEOUT = TimeUnit.SECONDS.toNanos(2);
+    // Repairs not answered after this are considered lost (ns).
+    private static final long REPAIR_TIMEOUT = TimeUnit.SECONDS.toNanos(2);
+    // Ask a matchmaker for a room when starting a game (see joinMatch).
+    private static final boolean MATCHMAKING = Boolean.getBoolean("nodeio.matchmaker");
+    // Connect while in the menu (see prewarm).
+    private static final boolean PREWARM =
+            Boolean.parseBoolean(System.getProperty("nodeio.prewarm", "true"));
+    // Lockstep: the host does not check the moves, speaks and catches, it
+    // only sends them by ticks, and every node plays them the same way (see
+    // checkTick). The state hash is checked every few ticks.
+    public static final boolean LOCKSTEP = Boolean.getBoolean("nodeio.lockstep");
+    private static final int LOCKSTEP_HASH = Integer.getInteger("nodeio.lockstep.hash", 10);
+    // Paused players are kept this long before being disconnected (ns).
+    private static final long SESSION_GRACE = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("nodeio.session.grace", 30000));
 
-    // Context.
+    // Metrics.
+    private static final Counter ASK_CONNECTION = Metrics.counter("model.ask.Connection");
+    private static final Counter ASK_MOVE = Metrics.counter("model.ask.Move");
+    private static final Counter ASK_PATH = Metrics.counter("model.ask.PathMove");
+    private static final Counter ASK_SPEAK = Metrics.counter("model.ask.Speak");
+    private static final Counter ASK_CATCH = Metrics.counter("model.ask.Catch");
+    private static final Counter ASK_DISCONNECTION = Metrics.counter("model.ask.Disconnection");
+    private static final Histogram PLAY_CONNECTION = Metrics.histogram("model.play.Connection.ns");
+    private static final Histogram PLAY_MOVE = Metrics.histogram("model.play.Move.ns");
+    private static final Histogram PLAY_SPEAK = Metrics.histogram("model.play.Speak.ns");
+    private static final Histogram PLAY_CATCH = Metrics.histogram("model.play.Catch.ns");
+    private static final Histogram PLAY_DISCONNECTION = Metrics.histogram("model.play.Disconnection.ns");
+    private static final Histogram PLAY_HOST_CHANGE = Metrics.histogram("model.play.HostChange.ns");
+    private static final Histogram CHECK_CONNECTION = Metrics.histogram("model.check.Connection.ns");
+    private static final Histogram CHECK_MOVE = Metrics.histogram("model.check.Move.ns");
+    private static final Histogram CHECK_PATH = Metrics.histogram("model.check.PathMove.ns");
+    private static final Histogram CHECK_SPEAK = Metrics.histogram("model.check.Speak.ns");
+    private static final Histogram CHECK_CATCH = Metrics.histogram("model.check.Catch.ns");
+    private static final Histogram CHECK_DISCONNECTION = Metrics.histogram("model.check.Disconnection.ns");
+    // From asking for a move to seeing it applied.
+    private static final Histogram RTT_MOVE = Metrics.histogram("model.rtt.Move.ns");
+    // Requests validated by a previous host, received again after a takeover.
+    private static final Counter DUPLICATES = Metrics.counter("failover.duplicates");
+    // State digests compared, the ones which differed, and the zones repaired.
+    private static final Counter DIGEST_CHECKED = Metrics.counter("digest.checked");
+    private static final Counter DIGEST_DIVERGED = Metrics.counter("digest.diverged");
+    private static final Counter DIGEST_REPAIRED = Metrics.counter("digest.repaired.zones");
+    // Moves shown before validation, and the ones the host did otherwise.
+    private static final Counter PREDICTED = Metrics.counter("prediction.moves");
+    private static final Counter MISPREDICTED = Metrics.counter("prediction.mispredicted");
+    // How far back catches were checked.
+    private static final Histogram REWIND = Metrics.histogram("lag.rewind.ns");
+    // Moves not sent because the host is overloaded (see Backpressure).
+    private static final Counter THROTTLED = Metrics.counter("backpressure.throttled");
+    // Paused players, and how they came back (or did not).
+    private static final Counter SUSPENDED = Metrics.counter("session.suspended");
+    private static final Counter RESUMED = Metrics.counter("session.resumed");
+    private static final Counter RESUME_SYNCED = Metrics.counter("session.resumed.synced");
+    private static final Counter RESUME_REJECTED = Metrics.counter("session.rejected");
+    private static final Counter EXPIRED = Metrics.counter("session.expired");
+    private static final Histogram RESUME = Metrics.histogram("session.resume.ns");
+    private static final Histogram RESUME_MISSED = Metrics.histogram("session.resume.missed");
+    // From tapping start to the first frame of the game.
+    private static final Histogram FIRST_FRAME = Metrics.histogram("join.first.frame.ns");
+    // From losing the connection to being up to date again.
+    private static final Histogram RESYNC = Metrics.histogram("reconnect.resync.ns");
+    // Host checks holding some zones only, or the whole state (see check).
+    private static final Counter CHECK_ZONED = Metrics.counter("host.checks.zoned");
+    private static final Counter CHECK_EXCLUSIVE = Metrics.counter("host.checks.exclusive");
+    // Lockstep ticks sent (host), their inputs, and the desyncs found.
+    private static final Counter TICKS = Metrics.counter("lockstep.ticks");
+    private static final Histogram TICK_INPUTS = Metrics.histogram("lockstep.tick.inputs");
+    private static final Histogram TICK_PLAY = Metrics.histogram("lockstep.tick.play.ns");
+    private static final Counter DESYNCS = Metrics.counter("lockstep.desyncs");
+    // Paths (host): their length, the steps sent, the ones found again
+    // because somebody was in the way, and the ones given up.
+    private static final Histogram PATH_LENGTH = Metrics.histogram("path.length");
+    private static final Counter PATH_STEPS = Metrics.counter("path.steps");
+    private static final Counter PATH_REPLANS = Metrics.counter("path.replans");
+    private static final Counter PATH_CANCELLED = Metrics.counter("path.cancelled");
+    private static final Counter PATH_UNREACHABLE = Metrics.counter("path.unreachable");
+
+    // Context (null for a headless host).
     private final Screen mScreen;
 
     // RabbitMQ.
     private final Node mNode;
+    // Starts the games (off the render thread), and when the last one
+    // was started (0 once rendered).
+    private final JoinPipeline mPipeline;
+    private volatile long mStartedAt;
     // The map.
     private MapM mMap;
-    // The player.
+    // The player (null for a headless host).
     private PlayerM mPlayer;
     // All the players.
     private PlayersM mPlayers;
+    // Last request validated per player and lane (see Action.getSequenceKey), to
+    // ignore the ones redelivered after a takeover.
+    private final Map<String, Long> mSequences;
+    // Host only; so that actions in different zones are checked in parallel.
+    private final ZoneLocks mLocks;
+    // When we asked for a repair not received yet, 0 if none (see playDigest).
+    private long mRepairAskedAt;
+    // Our predicted moves, not validated yet (in order).
+    private final ArrayList<Move> mPendingMoves;
+    // When we last asked for a move.
+    private long mLastMoveAt;
+    // Host only; where the players were recently.
+    private final PositionHistory mHistory;
+    // Lockstep; inputs of the tick in progress (host only), last tick
+    // played, and waiting for a Sync after a desync.
+    private final ArrayList<Action> mTickInputs;
+    private long mTick;
+    private boolean mIsDesynced;
+    // Host only; the players walking to a cell (see checkPathMove).
+    private final Map<String, PathFinder.Path> mPaths;
+    // Secret of our session, given to the host at connection.
+    private String mToken;
+    // Last action received: the host which broadcast it, and its rank.
+    private String mBroadcaster;
+    private long mLastBroadcast;
+    // Paused, and coming back: the actions received before the missed
+    // ones are kept for later (see playResume).
+    private boolean mIsSuspended;
+    private boolean mIsResuming;
+    private long mResumedAt;
+    // When the connection was lost, until resynced (0 if not).
+    private long mLostAt;
+    private final ArrayList<Action> mResumeBuffer;
+    // Host only; paused players, and when they will be disconnected.
+    private final HashMap<String, Long> mSuspended;
     // State.
     private State mState;
 
@@ -46,36 +205,49 @@ public class Model
     {
         mScreen = screen;
         mNode = new Node(this);
+        mPipeline = new JoinPipeline(this, mNode);
+        mSequences = new ConcurrentHashMap<>();
+        mLocks = new ZoneLocks();
+        mPendingMoves = new ArrayList<>();
+        mHistory = new PositionHistory();
+        mTickInputs = new ArrayList<>();
+        mPaths = new ConcurrentHashMap<>();
+        mResumeBuffer = new ArrayList<>();
+        mSuspended = new HashMap<>();
         mState = State.MENU;
+        // Metrics.
+        Metrics.gauge("model.players", () -> mPlayers == null ? 0 : mPlayers.getNbPlayers());
+        Metrics.gauge("model.zones", () -> mMap == null ? 0 : mMap.getNbZones());
     }
 
     /**
      * Action.
      * Connect player to the host, and create model.
      */
-    private void askForConnection()
+    void askForConnection()
     {
+        ASK_CONNECTION.increment();
+        mToken = UUID.randomUUID().toString();
+        Connection connection = new Connection(mNode.getID());
+        connection.setToken(mToken);
+
         if (! mNode.isHost())
         {
             // Not the host; request for game model.
-            mNode.notifyHost(new Connection(mNode.getID()));
+            mNode.notifyHost(connection);
         }
         else
         {
             // The host initiates game model (the one who create it):
-            // - Create Map.
+            // - Create an empty map.
             mMap = new MapM();
-            // - Create player's zone.
-            ZoneM zone = new ZoneM(mNode.getID(),
-                    ZoneM.Type.values()[(int) (Math.random() * ZoneM.Type.values().length)], 0);
-            mMap.add(zone);
-            // - Create player.
-            Vector2 appear = findCellToAppear(zone);
-            mPlayer = new PlayerM(mNode.getID(), (int) appear.x, (int) appear.y, 0, mMap);
             mPlayers = new PlayersM();
-            mPlayers.add(mPlayer);
+            // - Then validate its own connection like any other one
+            //   (so that it is captured and replayed the same way).
+            mNode.checkLocally(connection);
             // Start rendering.
             mScreen.onStartGame();
+            mPipeline.onJoined();
         }
     }
 
@@ -83,10 +255,59 @@ public class Model
      * Action.
      * Ask the host for moving player.
      */
-    public void askForMove(PlayerM.Event orientation)
+    public synchronized void askForMove(PlayerM.Event orientation)
     {
+        ASK_MOVE.increment();
+        long now = System.nanoTime();
+
+        if (now - mLastMoveAt < mNode.getMoveInterval())
+        {
+            // The host is overloaded: slow down.
+            THROTTLED.increment();
+            return;
+        }
+
+        mLastMoveAt = now;
         // Request for move.
-        mNode.notifyHost(new Move(mNode.getID(), orientation));
+        Move move = new Move(mNode.getID(), orientation);
+        move.setAskedAt(now);
+
+        if (isPredicting())
+        {
+            // Play it now, the host will confirm or correct it.
+            if (! move(mPlayer, orientation))
+            {
+                // Can't go there anyway.
+                return;
+            }
+
+            PREDICTED.increment();
+            Screen.playFootstepSound();
+            move.setPosition(mPlayer);
+            mPendingMoves.add(move);
+        }
+
+        mNode.notifyHost(move);
+    }
+
+    /**
+     * Action.
+     * Ask the host for walking to a cell of the whole map (see
+     * PlayerM.getMapPosition); one request instead of one per cell.
+     */
+    public void askForPath(Vector2 cell)
+    {
+        ASK_PATH.increment();
+        mNode.notifyHost(new PathMove(mNode.getID(), (int) cell.x, (int) cell.y));
+    }
+
+    /**
+     * The host validates its own moves right away, no need to predict them.
+     */
+    private boolean isPredicting()
+    {
+        return PREDICTION && ! LOCKSTEP && mPlayer != null && mState == State.GAME
+                && ! mNode.isHost();
     }
 
     /**
@@ -95,6 +316,7 @@ public class Model
      */
     public void askForSpeak(PlayerM.Speak sentence)
     {
+        ASK_SPEAK.increment();
         // Request for move.
         mNode.notifyHost(new Speak(mNode.getID(), sentence));
     }
@@ -105,8 +327,11 @@ public class Model
      */
     public void askForCatch()
     {
-        // Request for catch.
-        mNode.notifyHost(new Catch(mNode.getID()));
+        ASK_CATCH.increment();
+        // Request for catch, as we see the others.
+        Catch action = new Catch(mNode.getID());
+        action.setViewTime(mNode.getViewTime());
+        mNode.notifyHost(action);
     }
 
     /**
@@ -115,6 +340,7 @@ public class Model
      */
     public void askForDisconnection()
     {
+        ASK_DISCONNECTION.increment();
         // Request for disconnection.
         mNode.notifyHost(new Disconnection(mNode.getID()));
     }
@@ -122,33 +348,94 @@ public class Model
     /**
      * Process and play action received from host.
      */
-    public void play(Action action)
+    public synchronized void play(Action action)
     {
-        System.out.println("[DEBUG]: play " + action.getClass().getSimpleName());
+        Log.debug(Log.Category.MODEL, "play", action.getClass());
+
+        long start = System.nanoTime();
+
+        if (mIsResuming)
+        {
+            if (action instanceof Resume && isMe(action.getPlayer()))
+            {
+                playResume((Resume) action);
+            }
+            else
+            {
+                // Comes after the missed ones.
+                mResumeBuffer.add(action);
+            }
+
+            return;
+        }
+
+        if (action.getBroadcast() != 0)
+        {
+            if (action.getBroadcaster().equals(mBroadcaster)
+                    && action.getBroadcast() <= mLastBroadcast)
+            {
+                // Already played (see playResume).
+                return;
+            }
+
+            mBroadcaster = action.getBroadcaster();
+            mLastBroadcast = action.getBroadcast();
+        }
+
+        if (action instanceof Sync)
+        {
+            playSync((Sync) action);
+            return;
+        }
+        else if (mPlayers == null && ! (action instanceof Connection))
+        {
+            // Not in the game yet.
+            return;
+        }
+
+        advanceSequence(action);
 
         if (action instanceof Connection)
         {
             playConnection((Connection) action);
+            PLAY_CONNECTION.recordSince(start);
         }
         else if (action instanceof Move)
         {
             playMove((Move) action);
+            PLAY_MOVE.recordSince(start);
         }
         else if (action instanceof Speak)
         {
             playSpeak((Speak) action);
+            PLAY_SPEAK.recordSince(start);
         }
         else if (action instanceof Catch)
         {
             playCatch((Catch) action);
+            PLAY_CATCH.recordSince(start);
         }
         else if (action instanceof Disconnection)
         {
             playDisconnection((Disconnection) action);
+            PLAY_DISCONNECTION.recordSince(start);
         }
         else if (action instanceof HostChange)
         {
             playHostChange((HostChange) action);
+            PLAY_HOST_CHANGE.recordSince(start);
+        }
+        else if (action instanceof StateDigest)
+        {
+            playDigest((StateDigest) action);
+        }
+        else if (action instanceof Repair)
+        {
+            playRepair((Repair) action);
+        }
+        else if (action instanceof Tick)
+        {
+            playTick((Tick) action);
         }
     }
 
@@ -162,17 +449,25 @@ public class Model
         // Check if we are the new player.
         if (action.getPlayer().equals(mNode.getID()))
         {
+            if (mState != State.STARTING)
+            {
+                // Too late, we gave up (see JoinPipeline).
+                askForDisconnection();
+                return;
+            }
+
             // Set map and players.
             mMap = action.getMap();
             mPlayers = action.getPlayers();
             mPlayer = mPlayers.get(mPlayers.getNbPlayers() - 1);
             // Start rendering.
             mScreen.onStartGame();
+            mPipeline.onJoined();
         }
         else
         {
             // Already updated for the host (she/he is the one who sent the model).
-            if (! mNode.isHost())
+            if (! mNode.isHost() && mMap != null)
             {
                 // Update map and players.
                 MapM map = action.getMap();
@@ -185,33 +480,139 @@ public class Model
         }
     }
 
+    /**
+     * Play what we missed while paused, then what was received meanwhile.
+     */
+    private void playResume(Resume action)
+    {
+        mIsResuming = false;
+
+        if (action.isRejected())
+        {
+            // Paused for too long (or the host does not know us anymore).
+            RESUME_REJECTED.increment();
+            Log.info(Log.Category.MODEL, "session rejected");
+            mResumeBuffer.clear();
+            goToMenu();
+            return;
+        }
+
+        if (action.getMissed() == null)
+        {
+            // Too far behind: get the whole state.
+            RESUME_SYNCED.increment();
+            mNode.notifyHost(new Sync(mNode.getID()));
+        }
+        else
+        {
+            RESUME_MISSED.record(action.getMissed().size());
+            action.getMissed().forEach(this::play);
+            onResynced();
+        }
+        // The missed ones moved the last rank on: the buffered actions which
+        // were among them are skipped (see play). The others, even if
+        // broadcast before this response, are played.
+        mResumeBuffer.forEach(this::play);
+        mResumeBuffer.clear();
+
+        RESUMED.increment();
+        RESUME.recordSince(mResumedAt);
+        Log.info(Log.Category.MODEL, "session resumed");
+    }
+
+    private void playSync(Sync action)
+    {
+        // Only for the node which asked for it.
+        if (action.getMap() != null && action.getPlayer().equals(mNode.getID()))
+        {
+            mMap = action.getMap();
+            mPlayers = action.getPlayers();
+            mSequences.putAll(action.getSequences());
+            mIsDesynced = false;
+            onResynced();
+            Log.info(Log.Category.MODEL, "synced");
+        }
+    }
+
     private void playMove(Move action)
     {
-        boolean move = false;
         // Find the corresponding player (reference).
         PlayerM player = mPlayers.find(action.getPlayer());
         // Check if found.
         if (player == null)
         {
-            System.err.println("[ERROR]: can't play action");
+            Log.error(Log.Category.MODEL, "can't play action", action.getClass());
+            return;
+        }
+        // Our own move is now validated: measure the round trip.
+        if (action.getAskedAt() != 0 && player.getID().equals(mNode.getID()))
+        {
+            RTT_MOVE.recordSince(action.getAskedAt());
+        }
+        // Already played if predicted.
+        if (player == mPlayer && ! mPendingMoves.isEmpty())
+        {
+            reconcile(action);
             return;
         }
-        // Move it.
-        switch (action.getOrientation())
+
+        if (action.isRejected())
         {
-            case LEFT: move = player.moveLeft(); break;
-            case RIGHT: move = player.moveRight(); break;
-            case UP: move = player.moveUp(); break;
-            case DOWN: move = player.moveDown(); break;
+            return;
         }
         // If player moves, and she/he is on the same zone,
         // play a footstep sound.
-        if (move && player.getZone() == mPlayer.getZone())
+        if (move(player, action.getOrientation()) && isNearMe(player))
         {
             Screen.playFootstepSound();
         }
     }
 
+    private boolean move(PlayerM player, PlayerM.Event orientation)
+    {
+        switch (orientation)
+        {
+            case LEFT: return player.moveLeft();
+            case RIGHT: return player.moveRight();
+            case UP: return player.moveUp();
+            case DOWN: return player.moveDown();
+        }
+
+        return false;
+    }
+
+    /**
+     * The host answered one of our predicted moves. If it did not end where
+     * we predicted (e.g. declined because of a collision), start again from
+     * where the host put us, with the moves it has not answered yet.
+     */
+    private void reconcile(Move action)
+    {
+        Move predicted = null;
+        // Forget the moves the host answered.
+        while (! mPendingMoves.isEmpty()
+                && mPendingMoves.get(0).getSequence() <= action.getSequence())
+        {
+            predicted = mPendingMoves.remove(0);
+        }
+
+        if (predicted != null && predicted.getSequence() == action.getSequence()
+                && predicted.isAt(action.getI(), action.getJ(), action.getZone()))
+        {
+            return;
+        }
+
+        MISPREDICTED.increment();
+        Log.debug(Log.Category.MODEL, "misprediction", action.getClass());
+        mPlayer.place(action.getI(), action.getJ(), action.getZone());
+
+        for (Move move : mPendingMoves)
+        {
+            move(mPlayer, move.getOrientation());
+            move.setPosition(mPlayer);
+        }
+    }
+
     private void playSpeak(Speak action)
     {
         // Find the corresponding player (reference).
@@ -219,14 +620,14 @@ public class Model
         // Check if found.
         if (player == null)
         {
-            System.err.println("[ERROR]: can't play action");
+            Log.error(Log.Category.MODEL, "can't play action", action.getClass());
             return;
         }
         // Make her/him speak.
         player.speak(action.getSentence());
         // If player speaks, and she/he is on the same zone,
         // play a speak sound.
-        if (player.getZone() == mPlayer.getZone())
+        if (isNearMe(player))
         {
             Screen.playSpeakSound();
         }
@@ -248,10 +649,11 @@ public class Model
                     );
                     // Remove players from list.
                     mPlayers.remove(mPlayers.find(p));
+                    mHistory.forget(p);
                 }
         );
         // If I'm caught.
-        if (action.getCaught().contains(mPlayer.getID()))
+        if (mPlayer != null && action.getCaught().contains(mPlayer.getID()))
         {
             Screen.playCatchSound();
             goToCaught();
@@ -261,7 +663,7 @@ public class Model
     private void playDisconnection(Disconnection action)
     {
         // If I'm the disconnected guy.
-        if (mPlayer.getID().equals(action.getPlayer()))
+        if (isMe(action.getPlayer()))
         {
             goToMenu();
             return;
@@ -271,180 +673,715 @@ public class Model
                 .setOwner(action.getNewOwner()));
         // And remove the disconnected user.
         mPlayers.remove(mPlayers.find(action.getPlayer()));
+        mHistory.forget(action.getPlayer());
     }
 
     private void playHostChange(HostChange action)
     {
+        // Our repair request, if any, may be lost with the old host.
+        mRepairAskedAt = 0;
         // If I'm the new elected host.
-        if (action.getPlayer() != null && mPlayer.getID().equals(action.getPlayer()))
+        if (isMe(action.getPlayer()))
         {
-            System.out.println("[DEBUG]: I'm the new HOST");
+            Log.info(Log.Category.HOST, "I'm the new HOST");
+            // Our moves in the host queue will be validated by us.
+            mPendingMoves.clear();
             mNode.becomeHost();
         }
     }
 
 
-    /**
-     * Host only.
-     * Check if the action can be done.
-     * If so, return the corresponding one, otherwise null.
-     */
-    public Action check(Action action)
+    private void playDigest(StateDigest action)
     {
-        System.out.println("[DEBUG]: HOST check " + action.getClass().getSimpleName());
-
-        if (action instanceof Connection)
-        {
-            return checkConnection((Connection) action);
-        }
-        else if (action instanceof Move)
+        if (! mPendingMoves.isEmpty()
+                && System.nanoTime() - mPendingMoves.get(0).getAskedAt() > PREDICTION_TIMEOUT)
         {
-            return checkMove((Move) action);
+            // Never answered (e.g. dropped by the host rate limiter).
+            mPendingMoves.clear();
         }
-        else if (action instanceof Speak)
+
+        if (mRepairAskedAt != 0 && System.nanoTime() - mRepairAskedAt > REPAIR_TIMEOUT)
         {
-            return checkSpeak((Speak) action);
+            // Never answered (e.g. lost in a failover, or nothing to send).
+            mRepairAskedAt = 0;
         }
-        else if (action instanceof Catch)
+
+        if (mRepairAskedAt != 0 || ! mPendingMoves.isEmpty())
         {
-            return checkCatch((Catch) action);
+            // Compare once repaired, or once our predictions are answered.
+            return;
         }
-        else if (action instanceof Disconnection)
+
+        DIGEST_CHECKED.increment();
+        MerkleTree tree = new MerkleTree(mMap, mPlayers, action.getWidth());
+
+        if (tree.getRoot() == action.getTop()[0])
         {
-            return checkDisconnection((Disconnection) action);
+            return;
         }
-
-        return null;
+        // Ask for the zones which differ only.
+        DIGEST_DIVERGED.increment();
+        ArrayList<int[]> ranges = new ArrayList<>(tree.diff(action.getTop()));
+        Log.info(Log.Category.MODEL, "state diverged");
+        mRepairAskedAt = System.nanoTime();
+        mNode.notifyHost(new Repair(mNode.getID(), ranges));
     }
 
-    private Action checkConnection(Connection action)
+    private void playRepair(Repair action)
     {
+        // Only for the player who asked for it.
+        if (action.getZones() == null || ! action.getPlayer().equals(mNode.getID()))
+        {
+            return;
+        }
+        // Zones (their cells never change).
+        int index = 0;
 
-        // Add new zone.
-        ZoneM zone = new ZoneM(action.getPlayer(),
-                ZoneM.Type.values()[(int) (Math.random() * ZoneM.Type.values().length)],
-                mMap.getNbZones());
-        // Get a cell on which the player can appear.
-        Vector2 appear = findCellToAppear(zone);
-        // Add new player on this cell.
-        PlayerM player = new PlayerM(action.getPlayer(),
-                (int) appear.x, (int) appear.y,
-                mMap.getNbZones(), mMap);
-        // Update the model.
-        mPlayers.add(player);
-        mMap.add(zone);
-        // Send model.
-        return new Connection(action.getPlayer(), mMap, mPlayers);
-    }
+        for (int[] range : action.getRanges())
+        {
+            for (int i = range[0]; i < range[1] && index < action.getZones().size(); i ++)
+            {
+                ZoneM zone = action.getZones().get(index ++);
 
-    private Action checkMove(Move action)
-    {
-        final Action[] result = { action };
-        PlayerM player = mPlayers.find(action.getPlayer());
-        // Convert player position in the whole map ones.
-        Vector2 position = player.getMapPosition();
-        // Get the cel in which the player would like to go.
-        switch (action.getOrientation())
+                if (i < mMap.getNbZones())
+                {
+                    mMap.get(i).setOwner(zone.getOwner());
+                }
+                else
+                {
+                    mMap.add(zone);
+                }
+            }
+        }
+        // Players: remove the ones the host does not have there.
+        HashSet<String> IDs = new HashSet<>();
+        action.getPlayers().forEach(p -> IDs.add(p.getID()));
+
+        for (PlayerM player : new ArrayList<>(mPlayers.getPlayers()))
         {
-            case LEFT: position.y ++; break;
-            case RIGHT: position.y --; break;
-            case UP: position.x ++; break;
-            case DOWN: position.x --; break;
+            if (isInRanges(player.getZone(), action.getRanges())
+                    && ! IDs.contains(player.getID()))
+            {
+                mPlayers.remove(player);
+
+                if (player == mPlayer)
+                {
+                    goToCaught();
+                }
+            }
         }
-        // Check if a player is already on this cell.
-        mPlayers.getPlayers().forEach(p ->
+        // Then move or add the others.
+        action.getPlayers().forEach(p ->
                 {
-                    Vector2 pPosition = p.getMapPosition();
+                    PlayerM player = mPlayers.find(p.getID());
 
-                    if (pPosition.x == position.x
-                            && pPosition.y == position.y)
+                    if (player != null)
+                    {
+                        player.place(p.getI(), p.getJ(), p.getZone());
+                    }
+                    else
                     {
-                        // Can't do this move.
-                        result[0] = null;
+                        mPlayers.add(new PlayerM(p.getID(), p.getI(), p.getJ(),
+                                p.getZone(), p.getColor(), mMap));
                     }
                 }
         );
-        // Play it for the host.
-        if (result[0] != null)
+
+        DIGEST_REPAIRED.add(index);
+        mRepairAskedAt = 0;
+        Log.info(Log.Category.MODEL, "state repaired");
+    }
+
+    private static boolean isInRanges(int zone, ArrayList<int[]> ranges)
+    {
+        for (int[] range : ranges)
         {
-            playMove((Move) result[0]);
+            if (zone >= range[0] && zone < range[1])
+            {
+                return true;
+            }
         }
-        // Send it.
-        return result[0];
+
+        return false;
     }
 
-    private Action checkSpeak(Speak action)
+    /**
+     * Host only.
+     * Check if the action can be done.
+     * If so, return the corresponding one, otherwise null.
+     */
+    public Action check(Action action)
     {
-        // Play it for the host.
-        playSpeak(action);
-        // And send it.
-        return action;
+        return check(action, null);
     }
 
-    private Action checkCatch(Catch action)
+    /**
+     * Host only.
+     * Same, from any thread: the actions touching different zones are
+     * checked in parallel (see ZoneLocks). The result (or null) is given to
+     * done while these zones are still locked, so that the results of the
+     * actions touching the same zones are sent in the order they were
+     * checked.
+     */
+    public Action check(Action action, Consumer<Action> done)
     {
-        ArrayList<String> caught = new ArrayList<>();
-        PlayerM player = mPlayers.find(action.getPlayer());
+        mLocks.lockShared();
 
-        if (player == null)
+        try
         {
-            // This player has been caught before being able to catch somebody!
-            // Do nothing.
-            return null;
-        }
-        // Convert player position in the whole map ones.
-        Vector2 position = player.getMapPosition();
-        // Check if a player is adjacent to player cell.
-        mPlayers.getPlayers().forEach(p ->
-                {
-                    Vector2 pPosition = p.getMapPosition();
+            int[] stripes = stripesOf(action);
 
-                    if (pPosition.y == position.y)
-                    {
-                        if (Math.abs(pPosition.x - position.x) == 1)
-                        {
-                            caught.add(p.getID());
-                        }
-                    }
-                    else if (pPosition.x == position.x)
+            if (stripes != null)
+            {
+                mLocks.lock(stripes);
+
+                try
+                {
+                    // Still the same zones once locked (e.g. nobody caught).
+                    if (Arrays.equals(stripes, stripesOf(action)))
                     {
-                        if (Math.abs(pPosition.y - position.y) == 1)
-                        {
-                            caught.add(p.getID());
-                        }
+                        CHECK_ZONED.increment();
+                        return checkLocked(action, done);
                     }
                 }
-        );
-
-        if (caught.isEmpty())
+                finally
+                {
+                    mLocks.unlock(stripes);
+                }
+            }
+        }
+        finally
         {
-            // Send nothing; nobody was caught.
-            return null;
+            mLocks.unlockShared();
         }
-        else
+        // May touch any zone.
+        mLocks.lockAll();
+
+        try
         {
-            action = new Catch(action.getPlayer(), caught);
-            // Play it for the host.
-            playCatch(action);
-            // If host caught.
-            if (caught.contains(mNode.getID()))
-            {
-                Action change = checkHostChange();
-                // Send caught action before.
-                mNode.sendToPlayers(action);
-                // Than send host change.
-                mNode.sendToPlayers(change);
-                // Unbind.
-                mNode.looseHost();
-                System.out.println("[DEBUG]: I'm not HOST anymore");
-                return null;
-            }
-            else
+            synchronized (this)
             {
-                // And send it.
-                return action;
+                CHECK_EXCLUSIVE.increment();
+                return checkLocked(action, done);
             }
         }
+        finally
+        {
+            mLocks.unlockAll();
+        }
+    }
+
+    /**
+     * Host only.
+     * Run a task with the whole state held, once no check is in progress
+     * (e.g. to save the state, see Node.snapshotIfDue). Not from a check.
+     */
+    public void runExclusive(Runnable task)
+    {
+        mLocks.lockAll();
+
+        try
+        {
+            synchronized (this)
+            {
+                task.run();
+            }
+        }
+        finally
+        {
+            mLocks.unlockAll();
+        }
+    }
+
+    /**
+     * Host only.
+     * @return true if the calling thread holds the whole state (e.g. checking
+     * an action which may touch any zone).
+     */
+    public boolean isExclusive()
+    {
+        return mLocks.isAllLocked();
+    }
+
+    /**
+     * Host only.
+     * @return the stripes (see ZoneLocks) of the zones the action touches,
+     * or null if it may touch any.
+     */
+    private int[] stripesOf(Action action)
+    {
+        PlayerM player = mPlayers == null ? null : mPlayers.find(action.getPlayer());
+
+        if (player == null || LOCKSTEP)
+        {
+            // Lockstep inputs are only queued (see checkTick).
+            return null;
+        }
+
+        if (action instanceof Move)
+        {
+            // Her/his zone, and the next one if she/he crosses the border.
+            return mLocks.stripesOf(player.getZone(),
+                    zoneAt(getTarget(player, ((Move) action).getOrientation())));
+        }
+        else if (action instanceof Speak)
+        {
+            return mLocks.stripesOf(player.getZone());
+        }
+        else if (action instanceof Catch && ((Catch) action).getViewTime() == 0
+                && findCaught(player, 0).isEmpty())
+        {
+            // Her/his zone and the ones of the cells around. Catching
+            // somebody changes zones owners, and where the others were a
+            // moment ago (see MAX_REWIND) may be anywhere: the whole state.
+            Vector2 position = player.getMapPosition();
+            return mLocks.stripesOf(player.getZone(),
+                    zoneAt(new Vector2(position.x + 1, position.y)),
+                    zoneAt(new Vector2(position.x - 1, position.y)),
+                    zoneAt(new Vector2(position.x, position.y + 1)),
+                    zoneAt(new Vector2(position.x, position.y - 1)));
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the zone of a cell of the whole map, or -1 if outside.
+     */
+    private int zoneAt(Vector2 position)
+    {
+        int line = MapM.ZONE_LINE * ZoneM.SIZE;
+
+        if (position.x < 0 || position.y < 0 || position.y >= line)
+        {
+            return -1;
+        }
+
+        int zone = (int) position.x / ZoneM.SIZE * MapM.ZONE_LINE + (int) position.y / ZoneM.SIZE;
+
+        return zone < mMap.getNbZones() ? zone : -1;
+    }
+
+    /**
+     * The zones of the action, or the whole state, are locked.
+     */
+    private Action checkLocked(Action action, Consumer<Action> done)
+    {
+        Action result = checkLocked(action);
+
+        if (done != null)
+        {
+            done.accept(result);
+        }
+
+        return result;
+    }
+
+    private Action checkLocked(Action action)
+    {
+        Log.debug(Log.Category.HOST, "check", action.getClass());
+
+        long start = System.nanoTime();
+        Action result = null;
+
+        if (action.getSequence() != 0)
+        {
+            if (action.getSequence() <= mSequences.getOrDefault(action.getSequenceKey(), 0L))
+            {
+                // Already validated by the previous host.
+                DUPLICATES.increment();
+                return null;
+            }
+
+            mSequences.put(action.getSequenceKey(), action.getSequence());
+        }
+
+        if ((action instanceof Move || action instanceof PathMove)
+                && mPaths.remove(action.getPlayer()) != null)
+        {
+            // A new input stops the walk.
+            PATH_CANCELLED.increment();
+        }
+
+        if (LOCKSTEP && (action instanceof Move || action instanceof Speak
+                || action instanceof Catch))
+        {
+            // Played by every node at the end of the tick.
+            mTickInputs.add(action);
+            return null;
+        }
+
+        if (action instanceof Connection)
+        {
+            result = checkConnection((Connection) action);
+            CHECK_CONNECTION.recordSince(start);
+        }
+        else if (action instanceof Move)
+        {
+            result = checkMove((Move) action);
+            CHECK_MOVE.recordSince(start);
+        }
+        else if (action instanceof PathMove)
+        {
+            result = checkPathMove((PathMove) action);
+            CHECK_PATH.recordSince(start);
+        }
+        else if (action instanceof PathStep)
+        {
+            result = checkPathStep();
+        }
+        else if (action instanceof Speak)
+        {
+            result = checkSpeak((Speak) action);
+            CHECK_SPEAK.recordSince(start);
+        }
+        else if (action instanceof Catch)
+        {
+            result = checkCatch((Catch) action);
+            CHECK_CATCH.recordSince(start);
+        }
+        else if (action instanceof Disconnection)
+        {
+            result = checkDisconnection((Disconnection) action);
+            CHECK_DISCONNECTION.recordSince(start);
+        }
+        else if (action instanceof Sync)
+        {
+            result = new Sync(action.getPlayer(), mMap, mPlayers, new HashMap<>(mSequences));
+        }
+        else if (action instanceof StateDigest)
+        {
+            MerkleTree tree = new MerkleTree(mMap, mPlayers);
+            result = new StateDigest(action.getPlayer(), tree.getWidth(),
+                    tree.getTop(DIGEST_LEVELS));
+        }
+        else if (action instanceof Repair)
+        {
+            result = checkRepair((Repair) action);
+        }
+        else if (action instanceof Suspend)
+        {
+            checkSuspend((Suspend) action);
+        }
+        else if (action instanceof Resume)
+        {
+            result = checkResume((Resume) action);
+        }
+        else if (action instanceof Tick)
+        {
+            result = checkTick();
+        }
+
+        return result == null ? null : result.inherit(action);
+    }
+
+    private Action checkConnection(Connection action)
+    {
+
+        // Add new zone.
+        ZoneM zone = new ZoneM(action.getPlayer(),
+                ZoneM.Type.values()[Dice.pick(ZoneM.Type.values().length)],
+                mMap.getNbZones());
+        // Get a cell on which the player can appear.
+        Vector2 appear = findCellToAppear(zone);
+        // Add new player on this cell.
+        PlayerM player = new PlayerM(action.getPlayer(),
+                (int) appear.x, (int) appear.y,
+                mMap.getNbZones(), mMap);
+        // Update the model.
+        player.setSession(digest(action.getToken()));
+        mPlayers.add(player);
+        mMap.add(zone);
+        mHistory.record(player, mNode.now());
+        // The host's own connection.
+        if (action.getPlayer().equals(mNode.getID()))
+        {
+            mPlayer = player;
+        }
+        // Send model.
+        return new Connection(action.getPlayer(), mMap, mPlayers);
+    }
+
+    private Action checkMove(Move action)
+    {
+        PlayerM player = mPlayers.find(action.getPlayer());
+
+        if (player == null)
+        {
+            // Caught before being able to move.
+            return null;
+        }
+        // Get the cel in which the player would like to go, and check if a
+        // player is already on it.
+        if (isFree(getTarget(player, action.getOrientation())))
+        {
+            playMove(action);
+            mHistory.record(player, mNode.now());
+        }
+        else
+        {
+            // Its sender may have predicted it.
+            action.reject();
+        }
+        // Send it, with the resulting position.
+        action.setPosition(player);
+        return action;
+    }
+
+    private Action checkPathMove(PathMove action)
+    {
+        PlayerM player = mPlayers.find(action.getPlayer());
+
+        if (player == null)
+        {
+            // Caught before being able to move.
+            return null;
+        }
+
+        PathFinder.Path path = findPath(player, new Vector2(action.getX(), action.getY()));
+
+        if (path == null)
+        {
+            PATH_UNREACHABLE.increment();
+            return null;
+        }
+
+        PATH_LENGTH.record(path.getLength());
+        mPaths.put(player.getID(), path);
+        // First step right away, the next ones at the host pace.
+        return step(player);
+    }
+
+    /**
+     * Host only.
+     * Move each walking player by one cell (see Node.onPathTick).
+     */
+    private Action checkPathStep()
+    {
+        for (String ID : new ArrayList<>(mPaths.keySet()))
+        {
+            PlayerM player = mPlayers.find(ID);
+
+            if (player == null)
+            {
+                // Caught or gone.
+                mPaths.remove(ID);
+                continue;
+            }
+
+            Action move = step(player);
+
+            if (move != null)
+            {
+                mNode.sendToPlayers(move);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Host only.
+     * @return the next move of a walking player (to send), or null.
+     */
+    private Action step(PlayerM player)
+    {
+        PathFinder.Path path = mPaths.get(player.getID());
+
+        if (! isFree(getTarget(player, path.peek())))
+        {
+            // Somebody in the way: find another one.
+            PATH_REPLANS.increment();
+            path = findPath(player, path.getTarget());
+
+            if (path == null)
+            {
+                PATH_CANCELLED.increment();
+                mPaths.remove(player.getID());
+                return null;
+            }
+
+            mPaths.put(player.getID(), path);
+        }
+
+        Move move = new Move(player.getID(), path.poll());
+        PATH_STEPS.increment();
+
+        if (path.getLength() == 0)
+        {
+            // There.
+            mPaths.remove(player.getID());
+        }
+
+        if (LOCKSTEP)
+        {
+            // Played at the end of the tick, like the other inputs.
+            mTickInputs.add(move);
+            return null;
+        }
+
+        return checkMove(move);
+    }
+
+    /**
+     * @return the shortest way of the player to the cell (of the whole map)
+     * around the others, or null if none.
+     */
+    private PathFinder.Path findPath(PlayerM player, Vector2 target)
+    {
+        HashSet<Integer> occupied = new HashSet<>();
+
+        for (PlayerM p : mPlayers.getPlayers())
+        {
+            Vector2 position = p.getMapPosition();
+            occupied.add(PathFinder.getCell((int) position.x, (int) position.y));
+        }
+
+        return PathFinder.find(mMap, player.getMapPosition(), target, occupied);
+    }
+
+    /**
+     * Host only.
+     * @return true if some players are walking to a cell.
+     */
+    public boolean hasPaths()
+    {
+        return ! mPaths.isEmpty();
+    }
+
+    /**
+     * @return true if no player is on the cell (of the whole map). The other
+     * players positions may change meanwhile, but not in the zones we hold
+     * (see check).
+     */
+    private boolean isFree(Vector2 cell)
+    {
+        for (PlayerM player : mPlayers.getPlayers())
+        {
+            Vector2 position = player.getMapPosition();
+
+            if (position.x == cell.x && position.y == cell.y)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the cell in which the player would go, in the whole map.
+     */
+    private static Vector2 getTarget(PlayerM player, PlayerM.Event orientation)
+    {
+        // Convert player position in the whole map ones.
+        Vector2 position = player.getMapPosition();
+
+        switch (orientation)
+        {
+            case LEFT: position.y ++; break;
+            case RIGHT: position.y --; break;
+            case UP: position.x ++; break;
+            case DOWN: position.x --; break;
+        }
+
+        return position;
+    }
+
+    private Action checkSpeak(Speak action)
+    {
+        if (mPlayers.find(action.getPlayer()) == null)
+        {
+            // Caught before being able to speak.
+            return null;
+        }
+        // Play it for the host.
+        playSpeak(action);
+        // And send it.
+        return action;
+    }
+
+    private Action checkCatch(Catch action)
+    {
+        PlayerM player = mPlayers.find(action.getPlayer());
+
+        if (player == null)
+        {
+            // This player has been caught before being able to catch somebody!
+            // Do nothing.
+            return null;
+        }
+        // Check the others where the player saw them (she/he sees the past
+        // because of the network lag), but no further than MAX_REWIND.
+        long rewind = action.getViewTime() == 0 ? 0
+                : Math.max(0, Math.min(MAX_REWIND, mNode.now() - action.getViewTime()));
+        REWIND.record(rewind);
+        ArrayList<String> caught = findCaught(player, rewind);
+
+        if (caught.isEmpty())
+        {
+            // Send nothing; nobody was caught.
+            return null;
+        }
+        else
+        {
+            action = new Catch(action.getPlayer(), caught);
+            // Play it for the host.
+            playCatch(action);
+            // If host caught.
+            if (caught.contains(mNode.getID()))
+            {
+                // Send caught action before.
+                handOver(action);
+                return null;
+            }
+            else
+            {
+                // And send it.
+                return action;
+            }
+        }
+    }
+
+    /**
+     * @return the players next to the player, where she/he saw them rewind
+     * ago (now if 0).
+     */
+    private ArrayList<String> findCaught(PlayerM player, long rewind)
+    {
+        ArrayList<String> caught = new ArrayList<>();
+        long time = mNode.now() - rewind;
+        // Convert player position in the whole map ones.
+        Vector2 position = player.getMapPosition();
+        // Check if a player is adjacent to player cell.
+        mPlayers.getPlayers().forEach(p ->
+                {
+                    if (p == player)
+                    {
+                        return;
+                    }
+
+                    Vector2 pPosition = rewind == 0 ? p.getMapPosition()
+                            : mHistory.getAt(p, time);
+
+                    if (pPosition.y == position.y)
+                    {
+                        if (Math.abs(pPosition.x - position.x) == 1)
+                        {
+                            caught.add(p.getID());
+                        }
+                    }
+                    else if (pPosition.x == position.x)
+                    {
+                        if (Math.abs(pPosition.y - position.y) == 1)
+                        {
+                            caught.add(p.getID());
+                        }
+                    }
+                }
+        );
+
+        return caught;
     }
 
     private Action checkDisconnection(Disconnection action)
@@ -467,99 +1404,580 @@ public class Model
         if (! toPick.isEmpty())
         {
             // Pick new owner at random index.
-            newOwner = toPick.get((int) (Math.random() * toPick.size()));
+            newOwner = toPick.get(Dice.pick(toPick.size()));
             // Get the corresponding indexes of the zones.
             ArrayList<ZoneM> zones = mMap.getZones();
 
-            for (int i = 0; i < zones.size(); i ++)
+            for (int i = 0; i < zones.size(); i ++)
+            {
+                if (zones.get(i).getOwner().equals(player.getID()))
+                {
+                    indexes.add(i);
+                }
+            }
+        }
+        // If there exists somebody else in the game.
+        if (newOwner != null)
+        {
+            action = new Disconnection(action.getPlayer(),
+                    newOwner.getID(), indexes);
+            // Play it for the host.
+            playDisconnection(action);
+        }
+        else
+        {
+            // Play it for the host.
+            playDisconnection(action);
+            // Send nothing.
+            action = null;
+        }
+
+        // If the disconnected player is the host.
+        if (player.equals(mPlayer))
+        {
+            // Send disconnection before.
+            handOver(action);
+            return null;
+        }
+
+        // And send it.
+        return action;
+    }
+
+    private void checkSuspend(Suspend action)
+    {
+        if (mPlayers.find(action.getPlayer()) != null)
+        {
+            // Keep her/his player and zones for a while.
+            SUSPENDED.increment();
+            mSuspended.put(action.getPlayer(), mNode.now() + SESSION_GRACE);
+        }
+    }
+
+    private Action checkResume(Resume action)
+    {
+        PlayerM player = mPlayers.find(action.getPlayer());
+
+        if (player == null || player.getSession() == null
+                || ! player.getSession().equals(digest(action.getToken())))
+        {
+            // The request is not sent back: it carries the token.
+            Resume result = new Resume(action.getPlayer(), null);
+            result.reject();
+            return result;
+        }
+
+        mSuspended.remove(action.getPlayer());
+
+        return new Resume(action.getPlayer(),
+                mNode.getBroadcastsSince(action.getHost(), action.getLastReceived()));
+    }
+
+    /**
+     * Host only.
+     * @return the players paused for longer than the grace period, who are
+     * not waited for anymore (they have to be disconnected).
+     */
+    public synchronized ArrayList<String> expireSessions(long now)
+    {
+        ArrayList<String> expired = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = mSuspended.entrySet().iterator();
+
+        while (iterator.hasNext())
+        {
+            Map.Entry<String, Long> entry = iterator.next();
+
+            if (entry.getValue() - now < 0)
+            {
+                expired.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+
+        EXPIRED.add(expired.size());
+
+        return expired;
+    }
+
+    /**
+     * @return what the host keeps of a session token, so that any other
+     * player taking the host role can check it without knowing it.
+     */
+    private static String digest(String token)
+    {
+        if (token == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+            return new BigInteger(1, hash).toString(16);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Action checkRepair(Repair action)
+    {
+        if (action.getRanges() == null)
+        {
+            return null;
+        }
+
+        ArrayList<ZoneM> zones = new ArrayList<>();
+        ArrayList<Repair.PlayerState> players = new ArrayList<>();
+        // Sent by a client: keep the ranges within the map, and drop the
+        // empty or inverted ones.
+        ArrayList<int[]> ranges = new ArrayList<>();
+
+        for (int[] range : action.getRanges())
+        {
+            if (range == null || range.length < 2)
+            {
+                continue;
+            }
+
+            int from = Math.max(0, range[0]);
+            int to = Math.min(range[1], mMap.getNbZones());
+
+            if (from < to)
+            {
+                ranges.add(new int[] { from, to });
+            }
+        }
+
+        for (int[] range : ranges)
+        {
+            for (int i = range[0]; i < range[1]; i ++)
+            {
+                zones.add(mMap.get(i));
+            }
+        }
+
+        mPlayers.getPlayers().forEach(p ->
+                {
+                    if (isInRanges(p.getZone(), ranges))
+                    {
+                        players.add(new Repair.PlayerState(p));
+                    }
+                }
+        );
+
+        return new Repair(action.getPlayer(), ranges, zones, players);
+    }
+
+    /**
+     * Host only.
+     * We are out of the game: send our last action (if any), then give the
+     * host role to another player.
+     */
+    private void handOver(Action last)
+    {
+        Action change = checkHostChange();
+
+        if (last != null)
+        {
+            mNode.sendToPlayers(last);
+        }
+        // Than send host change.
+        mNode.sendToPlayers(change);
+        // Unbind.
+        mNode.looseHost();
+        // Nobody left in the room.
+        if (change.getPlayer() == null)
+        {
+            mNode.closeRoom();
+        }
+
+        Log.info(Log.Category.HOST, "I'm not HOST anymore");
+    }
+
+    /**
+     * Host only, lockstep.
+     * Close the tick: play its inputs like every other node will, and send
+     * them (nothing if there is none and no hash to check).
+     */
+    private Action checkTick()
+    {
+        if (mTickInputs.isEmpty() && (mTick + 1) % LOCKSTEP_HASH != 0)
+        {
+            return null;
+        }
+
+        Tick tick = new Tick(mNode.getID(), mTick + 1, new ArrayList<>(mTickInputs));
+        mTickInputs.clear();
+        playTick(tick);
+        TICKS.increment();
+        TICK_INPUTS.record(tick.getInputs().size());
+
+        if (tick.getTick() % LOCKSTEP_HASH == 0)
+        {
+            tick.setHash(hashState());
+        }
+
+        if (mPlayer != null && mPlayers.find(mPlayer.getID()) == null)
+        {
+            // Caught during the tick.
+            handOver(tick);
+            return null;
+        }
+
+        return tick;
+    }
+
+    private Action checkHostChange()
+    {
+        HostChange action;
+        // Create the a list to pick a random player to be the new host.
+        ArrayList<PlayerM> toPick = new ArrayList<>(mPlayers.getPlayers());
+        toPick.remove(mPlayer);
+        PlayerM newHost;
+
+        if (! toPick.isEmpty())
+        {
+            // Pick new host at random index.
+            newHost = toPick.get(Dice.pick(toPick.size()));
+            action = new HostChange(newHost.getID());
+        }
+        else
+        {
+            // If nobody else in the game.
+            action = new HostChange(null);
+        }
+
+        return action;
+    }
+
+    /**
+     * Host only.
+     * The action will not be checked (e.g. too old): tell its sender, which
+     * may have predicted it (see reconcile).
+     * @return the action to send, or null.
+     */
+    public synchronized Action decline(Action action)
+    {
+        PlayerM player = mPlayers.find(action.getPlayer());
+
+        if (! (action instanceof Move) || player == null)
+        {
+            return null;
+        }
+
+        action.reject();
+        ((Move) action).setPosition(player);
+
+        return action;
+    }
+
+    /**
+     * The host stopped sending heartbeats (see FailureDetector): pick the
+     * node which should take over first, among the standbys still alive,
+     * or the players if there is none (players only report to the host, so
+     * the others don't know if they are alive). Nodes with the same view
+     * pick the same one, the lowest ID; the role itself goes to the first
+     * claim (see Failover), so that different views can't make
+     * two hosts.
+     * @return the ID of the node to take over first, or null if none.
+     */
+    public synchronized String elect(String host, Set<String> standbys)
+    {
+        if (mPlayers == null)
+        {
+            return null;
+        }
+
+        String elected = null;
+
+        for (String ID : standbys)
+        {
+            if (! ID.equals(host) && (elected == null || ID.compareTo(elected) < 0))
+            {
+                elected = ID;
+            }
+        }
+
+        if (elected == null)
+        {
+            for (PlayerM player : mPlayers.getPlayers())
+            {
+                String ID = player.getID();
+
+                if (! ID.equals(host) && (elected == null || ID.compareTo(elected) < 0))
+                {
+                    elected = ID;
+                }
+            }
+        }
+
+        return elected;
+    }
+
+    /**
+     * Our claim of the host role won (see elect): take it, and disconnect
+     * the dead host.
+     * @return true if we are the new host.
+     */
+    public synchronized boolean onHostFailure(String host)
+    {
+        if (mPlayers == null)
+        {
+            return false;
+        }
+
+        Log.info(Log.Category.HOST, "I'm the new HOST (failover)");
+        mPendingMoves.clear();
+        mNode.becomeHost();
+        // Remove the dead host from the game (locked like the requests,
+        // which are already being checked).
+        mNode.checkLocally(new Disconnection(host), true);
+
+        return true;
+    }
+
+    /**
+     * Disconnect player when closing the game.
+     * If we are the host we need to give our role to another player.
+     */
+    public void shutDownHook()
+    {
+        if (mState == State.GAME)
+        {
+            if (mNode.isHost() && mPlayer == null)
             {
-                if (zones.get(i).getOwner().equals(player.getID()))
+                // Headless host: nobody to give the role to.
+                mNode.looseHost();
+
+                if (mPlayers.getNbPlayers() == 0)
                 {
-                    indexes.add(i);
+                    mNode.closeRoom();
                 }
             }
+            else if (mNode.isHost())
+            {
+                // Directly process our disconnection.
+                mNode.checkLocally(new Disconnection(mNode.getID()), true);
+            }
+            else
+            {
+                // Otherwise only notify the host.
+                askForDisconnection();
+            }
         }
-        // If there exists somebody else in the game.
-        if (newOwner != null)
+    }
+
+    /**
+     * The app is paused: stop receiving actions, but keep our place in the
+     * game for a while (see resume). The host can't be paused (nobody would
+     * check the actions), so it leaves the game instead.
+     */
+    public void suspend()
+    {
+        if (mState != State.GAME || mNode.isHost() || mToken == null)
         {
-            action = new Disconnection(action.getPlayer(),
-                    newOwner.getID(), indexes);
-            // Play it for the host.
-            playDisconnection(action);
+            shutDownHook();
+            return;
         }
-        else
+
+        mIsSuspended = true;
+        mNode.notifyHost(new Suspend(mNode.getID()));
+        mNode.suspend();
+    }
+
+    /**
+     * The app is back: get the actions missed while paused.
+     */
+    public void resume()
+    {
+        if (! mIsSuspended)
         {
-            // Play it for the host.
-            playDisconnection(action);
-            // Send nothing.
-            action = null;
+            return;
         }
 
-        // If the disconnected player is the host.
-        if (player.equals(mPlayer))
+        mIsSuspended = false;
+        mResumedAt = System.nanoTime();
+        resync();
+    }
+
+    /**
+     * The connection was lost, and is back: get the actions missed
+     * meanwhile, like after a pause.
+     */
+    public void onReconnected(long lostAt)
+    {
+        if (mState != State.GAME)
         {
-            Action change = checkHostChange();
-            // Send disconnection before.
-            if (action != null)
-            {
-                mNode.sendToPlayers(action);
-            }
-            // Than send host change.
-            mNode.sendToPlayers(change);
-            // Unbind.
-            mNode.looseHost();
-            System.out.println("[DEBUG]: I'm not HOST anymore");
-            return null;
+            return;
         }
 
-        // And send it.
-        return action;
+        mLostAt = lostAt;
+        mResumedAt = System.nanoTime();
+        resync();
     }
 
-    private Action checkHostChange()
+    /**
+     * Receive the actions again, and ask for the missed ones (or for the
+     * whole state if we have no session, e.g. a standby).
+     */
+    private void resync()
     {
-        HostChange action;
-        // Create the a list to pick a random player to be the new host.
-        ArrayList<PlayerM> toPick = new ArrayList<>(mPlayers.getPlayers());
-        toPick.remove(mPlayer);
-        PlayerM newHost;
+        boolean resume = mToken != null && mPlayer != null;
 
-        if (! toPick.isEmpty())
+        synchronized (this)
         {
-            // Pick new host at random index.
-            newHost = toPick.get((int) (Math.random() * toPick.size()));
-            action = new HostChange(newHost.getID());
+            // Before receiving anything on the new queue.
+            mIsResuming = resume;
+            // The requests in flight may be lost (see Node.reconnect).
+            mRepairAskedAt = 0;
         }
-        else
+
+        mNode.resume();
+        mNode.notifyHost(resume
+                ? new Resume(mNode.getID(), mToken, mBroadcaster, mLastBroadcast)
+                : new Sync(mNode.getID()));
+    }
+
+    private void onResynced()
+    {
+        if (mLostAt != 0)
         {
-            // If nobody else in the game.
-            action = new HostChange(null);
+            RESYNC.recordSince(mLostAt);
+            mLostAt = 0;
         }
+    }
 
-        return action;
+    public boolean isSuspended()
+    {
+        return mIsSuspended;
     }
 
     /**
-     * Disconnect player when closing the game.
-     * If we are the host we need to give our role to another player.
+     * Lockstep.
+     * Play the inputs of a tick, then check that we are in the same state
+     * as the host if it tells it.
      */
-    public void shutDownHook()
+    private void playTick(Tick action)
     {
-        if (mState == State.GAME)
+        long start = System.nanoTime();
+        action.getInputs().forEach(this::simulate);
+        mTick = action.getTick();
+        TICK_PLAY.recordSince(start);
+
+        if (action.getHash() != 0 && action.getHash() != hashState() && ! mIsDesynced)
+        {
+            DESYNCS.increment();
+            Log.error(Log.Category.MODEL, "desync at tick", action.getTick());
+            // Get the whole state again.
+            mIsDesynced = true;
+            mNode.notifyHost(new Sync(mNode.getID()));
+        }
+    }
+
+    /**
+     * Lockstep.
+     * Play an input as the host would have checked it (without lag
+     * compensation: everybody plays it at the same tick).
+     */
+    private void simulate(Action input)
+    {
+        PlayerM player = mPlayers.find(input.getPlayer());
+
+        if (player == null)
+        {
+            // Caught or gone before the tick.
+            return;
+        }
+
+        if (input instanceof Move)
         {
-            if (mNode.isHost())
+            if (isFree(getTarget(player, ((Move) input).getOrientation())))
             {
-                // Directly process our disconnection.
-                checkDisconnection(new Disconnection(mNode.getID()));
+                playMove((Move) input);
             }
-            else
+        }
+        else if (input instanceof Speak)
+        {
+            playSpeak((Speak) input);
+        }
+        else if (input instanceof Catch)
+        {
+            ArrayList<String> caught = findCaught(player, 0);
+
+            if (! caught.isEmpty())
             {
-                // Otherwise only notify the host.
-                askForDisconnection();
+                playCatch(new Catch(input.getPlayer(), caught));
             }
         }
     }
 
+    /**
+     * Headless host only.
+     * Apply an action which was validated by a previous host process (see
+     * Journal), to rebuild its state.
+     */
+    private void replay(Action action)
+    {
+        // Its request may be delivered again: not validated twice (see
+        // checkLocked).
+        advanceSequence(action);
+
+        if (action instanceof Connection)
+        {
+            // Carries the whole map and players.
+            mMap = ((Connection) action).getMap();
+            mPlayers = ((Connection) action).getPlayers();
+        }
+        else if (action instanceof Move)
+        {
+            playMove((Move) action);
+        }
+        else if (action instanceof Speak)
+        {
+            playSpeak((Speak) action);
+        }
+        else if (action instanceof Catch)
+        {
+            playCatch((Catch) action);
+        }
+        else if (action instanceof Disconnection)
+        {
+            playDisconnection((Disconnection) action);
+        }
+        else if (action instanceof Tick)
+        {
+            // Its hash was the one of the state we rebuild.
+            ((Tick) action).getInputs().forEach(this::advanceSequence);
+            ((Tick) action).getInputs().forEach(this::simulate);
+            mTick = ((Tick) action).getTick();
+        }
+    }
+
+    private void advanceSequence(Action action)
+    {
+        if (action.getSequence() != 0)
+        {
+            mSequences.merge(action.getSequenceKey(), action.getSequence(), Math::max);
+        }
+    }
+
+    private boolean isMe(String ID)
+    {
+        return mPlayer != null && mPlayer.getID().equals(ID);
+    }
+
+    /**
+     * @return true if the player is in the zone we are looking at (so that
+     * we can hear her/him).
+     */
+    private boolean isNearMe(PlayerM player)
+    {
+        return mScreen != null && mPlayer != null && player.getZone() == mPlayer.getZone();
+    }
+
     /**
      * Find a cell on which there is no environment obstacle, to make player
      * appear on it.
@@ -579,14 +1997,186 @@ public class Model
             }
         }
 
-        return cells.get((int) (Math.random() * cells.size()));
+        return cells.get(Dice.pick(cells.size()));
+    }
+
+    /**
+     * Create a new room, and play in it (as its host).
+     * @return the room name, for the other players to join it.
+     */
+    public String createRoom()
+    {
+        String room = UUID.randomUUID().toString().substring(0, 8);
+        joinRoom(room);
+
+        return room;
+    }
+
+    /**
+     * Play in the given room.
+     */
+    public void joinRoom(String room)
+    {
+        setRoom(room);
+        goToGame();
+    }
+
+    /**
+     * Set the room for the next game (see Node.setRoom).
+     */
+    public void setRoom(String room)
+    {
+        mNode.setRoom(room);
+    }
+
+    /**
+     * Play in the room given by the matchmaker, or in the current one if
+     * matchmaking is off or the matchmaker did not answer.
+     */
+    public void joinMatch()
+    {
+        startGame(MATCHMAKING);
     }
 
     public void goToGame()
     {
+        startGame(false);
+    }
+
+    /**
+     * Connect and join in the background (see JoinPipeline); the model is
+     * STARTING until then.
+     */
+    private void startGame(boolean matchmaking)
+    {
+        mStartedAt = System.nanoTime();
+        mPendingMoves.clear();
+        // Ranks of another game.
+        mBroadcaster = null;
+        mLastBroadcast = 0;
         mState = State.STARTING;
-        mNode.create();
-        askForConnection();
+        mPipeline.start(matchmaking);
+    }
+
+    /**
+     * Start a headless host: no screen, no player, it only validates the
+     * actions of the others. Its state is rebuilt from the journal if a
+     * previous host process crashed.
+     * @return false if there is already a host.
+     */
+    public boolean goToServer(Journal journal)
+    {
+        // Requests are checked once the state is rebuilt (see serve).
+        mNode.create(false);
+
+        if (! mNode.isHost())
+        {
+            Log.error(Log.Category.HOST, "a host is already running");
+            return false;
+        }
+
+        mMap = new MapM();
+        mPlayers = new PlayersM();
+
+        try
+        {
+            Journal.Recovery recovery = journal.recover();
+
+            if (recovery.getMap() != null)
+            {
+                mMap = recovery.getMap();
+                mPlayers = recovery.getPlayers();
+            }
+
+            mSequences.putAll(recovery.getRequests());
+            recovery.getActions().forEach(this::replay);
+        }
+        catch (IOException e)
+        {
+            Log.error(Log.Category.HOST, "journal recovery", e);
+        }
+
+        mNode.setJournal(journal);
+        mState = State.GAME;
+        mNode.serve();
+
+        return true;
+    }
+
+    /**
+     * Start a headless standby: no screen, no player, it mirrors the state
+     * of the host and takes over first if the host fails. If there is no
+     * host yet, it is the host.
+     */
+    public void goToStandby()
+    {
+        mNode.setStandby(true);
+        mNode.create(false);
+
+        if (mNode.isHost())
+        {
+            mMap = new MapM();
+            mPlayers = new PlayersM();
+        }
+        else
+        {
+            // Ask for the current state (see playSync).
+            mNode.notifyHost(new Sync(mNode.getID()));
+        }
+
+        mState = State.GAME;
+        // Requests are checked once the state is there.
+        mNode.serve();
+    }
+
+    /**
+     * Replay only.
+     * Start an offline host (see Replay) from the state it had when the
+     * capture started.
+     */
+    public void goToReplay(String hostID, MapM map, PlayersM players)
+    {
+        mNode.goOffline(hostID);
+        mMap = map == null ? new MapM() : map;
+        mPlayers = players == null ? new PlayersM() : players;
+        mPlayer = mPlayers.find(hostID);
+        mState = State.GAME;
+    }
+
+    /**
+     * Offline client only (see ResumeCheck).
+     * Be a player who was paused with the given state, waiting for the
+     * response to her/his Resume.
+     */
+    public synchronized void goToResuming(String ID, MapM map, PlayersM players,
+                                          String host, long lastReceived)
+    {
+        mNode.goOffline(ID, false);
+        mMap = map;
+        mPlayers = players;
+        mPlayer = mPlayers.find(ID);
+        mBroadcaster = host;
+        mLastBroadcast = lastReceived;
+        mState = State.GAME;
+        mIsResuming = true;
+        mResumedAt = System.nanoTime();
+    }
+
+    /**
+     * Replay only.
+     * Set the host clock (see Node.now).
+     */
+    public void setTime(long time)
+    {
+        mNode.setTime(time);
+    }
+
+    /**
+     * @return a hash of the map and players, to compare states between nodes.
+     */
+    public long hashState()
+    {
+        return StateHash.of(mMap, mPlayers);
     }
 
     public void goToCaught()
@@ -609,6 +2199,48 @@ public class Model
         return mState;
     }
 
+    /**
+     * Connect in the background as soon as the menu shows, so that the game
+     * starts faster.
+     */
+    public void prewarm()
+    {
+        if (PREWARM)
+        {
+            mPipeline.prewarm();
+        }
+    }
+
+    /**
+     * The game is rendered (see View.render).
+     */
+    public void onFrame()
+    {
+        if (mStartedAt != 0)
+        {
+            FIRST_FRAME.recordSince(mStartedAt);
+            mStartedAt = 0;
+        }
+    }
+
+    /**
+     * @return what the game is waiting for while STARTING, or null.
+     */
+    public JoinPipeline.Stage getStage()
+    {
+        return mPipeline.getStage();
+    }
+
+    /**
+     * Host only.
+     * @return the last request validated per player and lane (see
+     * Journal.snapshot).
+     */
+    public Map<String, Long> getSequences()
+    {
+        return mSequences;
+    }
+
     public MapM getMap()
     {
         return mMap;
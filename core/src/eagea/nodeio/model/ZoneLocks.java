@@ -0,0 +1,114 @@
+package eagea.nodeio.model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Host only.
+ * Locks of the game state, so that the actions touching different zones can
+ * be checked in parallel (see Model.check). The zones are spread over a
+ * fixed number of stripes: an action holds the state shared, and the stripes
+ * of the zones it touches, always taken in ascending order so that two
+ * actions crossing the same borders can't deadlock. The actions which may
+ * touch any zone (e.g. a connection adds one) hold the whole state instead.
+ */
+public class ZoneLocks
+{
+    // Locks shared by the zones ("nodeio.host.stripes").
+    private static final int STRIPES = Integer.getInteger("nodeio.host.stripes", 64);
+
+    // Shared by the zone actions, exclusive for the others.
+    private final ReentrantReadWriteLock mState;
+    private final ReentrantLock[] mStripes;
+
+    public ZoneLocks()
+    {
+        mState = new ReentrantReadWriteLock();
+        mStripes = new ReentrantLock[STRIPES];
+
+        for (int i = 0; i < STRIPES; i ++)
+        {
+            mStripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @param zones the negative ones (outside the map) are ignored.
+     * @return the stripes of the zones, sorted and without duplicates (the
+     * order to lock them in).
+     */
+    public int[] stripesOf(int... zones)
+    {
+        int[] stripes = new int[zones.length];
+        int size = 0;
+
+        for (int zone : zones)
+        {
+            if (zone >= 0)
+            {
+                stripes[size ++] = zone % STRIPES;
+            }
+        }
+
+        Arrays.sort(stripes, 0, size);
+        int count = 0;
+
+        for (int i = 0; i < size; i ++)
+        {
+            if (i == 0 || stripes[i] != stripes[i - 1])
+            {
+                stripes[count ++] = stripes[i];
+            }
+        }
+
+        return Arrays.copyOf(stripes, count);
+    }
+
+    public void lockShared()
+    {
+        mState.readLock().lock();
+    }
+
+    public void unlockShared()
+    {
+        mState.readLock().unlock();
+    }
+
+    /**
+     * The state must be held shared (see lockShared).
+     */
+    public void lock(int[] stripes)
+    {
+        for (int stripe : stripes)
+        {
+            mStripes[stripe].lock();
+        }
+    }
+
+    public void unlock(int[] stripes)
+    {
+        for (int i = stripes.length - 1; i >= 0; i --)
+        {
+            mStripes[stripes[i]].unlock();
+        }
+    }
+
+    public void lockAll()
+    {
+        mState.writeLock().lock();
+    }
+
+    public void unlockAll()
+    {
+        mState.writeLock().unlock();
+    }
+
+    /**
+     * @return true if the calling thread holds the whole state.
+     */
+    public boolean isAllLocked()
+    {
+        return mState.isWriteLockedByCurrentThread();
+    }
+}
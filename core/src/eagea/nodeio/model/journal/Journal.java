@@ -0,0 +1,353 @@
+package eagea.nodeio.model.journal;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.metrics.Histogram;
+import eagea.nodeio.metrics.Metrics;
+import eagea.nodeio.model.logic.map.MapM;
+import eagea.nodeio.model.logic.player.PlayersM;
+import eagea.nodeio.model.rabbitmq.action.Action;
+
+/**
+ * Host only.
+ * Append-only log of the validated actions, so that a crashed host can
+ * rebuild the game state.
+ * Actions are written in memory-mapped segment files (they survive the
+ * process being killed since the OS owns the pages), which are rolled when
+ * full. Every SNAPSHOT_PERIOD actions, the whole map and players are saved
+ * (with the last request validated per sender, so that the requests
+ * delivered again are not validated twice), and the segments older than
+ * this snapshot are deleted. Recovery loads the
+ * latest snapshot and replays the actions written after it.
+ * A record is [length][sequence][serialized action]; the length is written
+ * last, so a torn record is seen as the end of the journal.
+ */
+public class Journal
+{
+    private static final long SEGMENT_SIZE = Long.getLong("nodeio.journal.segment", 16 << 20);
+    private static final int SNAPSHOT_PERIOD = Integer.getInteger("nodeio.journal.snapshot", 1000);
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    // Metrics.
+    private static final Histogram APPEND = Metrics.histogram("journal.append.ns");
+    private static final Histogram SNAPSHOT = Metrics.histogram("journal.snapshot.ns");
+    private static final Histogram RECOVERY = Metrics.histogram("journal.recovery.ns");
+
+    /**
+     * State saved by the host at a given sequence number.
+     */
+    private static class Snapshot implements Serializable
+    {
+        private static final long serialVersionUID = 3311860128553414512L;
+
+        private final long mSequence;
+        private final MapM mMap;
+        private final PlayersM mPlayers;
+        // Null in the snapshots written before it was saved.
+        private final HashMap<String, Long> mRequests;
+
+        private Snapshot(long sequence, MapM map, PlayersM players,
+                         HashMap<String, Long> requests)
+        {
+            mSequence = sequence;
+            mMap = map;
+            mPlayers = players;
+            mRequests = requests;
+        }
+    }
+
+    /**
+     * What was found on disk: the last snapshot (if any) and the actions
+     * validated after it, in order.
+     */
+    public static class Recovery
+    {
+        private final MapM mMap;
+        private final PlayersM mPlayers;
+        private final Map<String, Long> mRequests;
+        private final ArrayList<Action> mActions;
+
+        private Recovery(MapM map, PlayersM players, Map<String, Long> requests,
+                         ArrayList<Action> actions)
+        {
+            mMap = map;
+            mPlayers = players;
+            mRequests = requests;
+            mActions = actions;
+        }
+
+        public MapM getMap()
+        {
+            return mMap;
+        }
+
+        public PlayersM getPlayers()
+        {
+            return mPlayers;
+        }
+
+        /**
+         * @return the last request validated per sender and lane at the
+         * snapshot (see Action.getSequenceKey), empty if none.
+         */
+        public Map<String, Long> getRequests()
+        {
+            return mRequests;
+        }
+
+        public ArrayList<Action> getActions()
+        {
+            return mActions;
+        }
+    }
+
+    private final File mDirectory;
+    // Current segment.
+    private MappedByteBuffer mSegment;
+    // Sequence number of the last appended action, and of the last snapshot.
+    private long mSequence;
+    private long mSnapshotSequence;
+
+    public Journal(File directory)
+    {
+        mDirectory = directory;
+
+        if (! mDirectory.isDirectory() && ! mDirectory.mkdirs())
+        {
+            Log.error(Log.Category.HOST, "journal directory", mDirectory);
+        }
+    }
+
+    public synchronized void append(Action action) throws IOException
+    {
+        long start = System.nanoTime();
+        byte[] body = SerializationUtils.serialize(action);
+        // Keep room for the end marker.
+        int size = HEADER_SIZE + body.length + Integer.BYTES;
+
+        if (mSegment == null || mSegment.remaining() < size)
+        {
+            roll(size);
+        }
+
+        int position = mSegment.position();
+        mSegment.position(position + Integer.BYTES);
+        mSegment.putLong(mSequence + 1);
+        mSegment.put(body);
+        // Commit the record.
+        mSegment.putInt(position, body.length);
+        mSequence ++;
+
+        APPEND.recordSince(start);
+    }
+
+    public synchronized boolean isSnapshotDue()
+    {
+        return mSequence - mSnapshotSequence >= SNAPSHOT_PERIOD;
+    }
+
+    /**
+     * Save the state resulting from all the actions appended so far, and
+     * drop the segments it makes useless.
+     */
+    public synchronized void snapshot(MapM map, PlayersM players, Map<String, Long> requests)
+            throws IOException
+    {
+        long start = System.nanoTime();
+        byte[] data = SerializationUtils.serialize(new Snapshot(mSequence, map, players,
+                new HashMap<>(requests)));
+        File file = new File(mDirectory, name(mSequence, SNAPSHOT_SUFFIX));
+        File tmp = new File(mDirectory, file.getName() + ".tmp");
+
+        try (FileOutputStream output = new FileOutputStream(tmp))
+        {
+            output.write(data);
+            output.getFD().sync();
+        }
+
+        if (! tmp.renameTo(file))
+        {
+            throw new IOException("can't write snapshot " + file);
+        }
+
+        mSnapshotSequence = mSequence;
+        compact();
+
+        SNAPSHOT.recordSince(start);
+    }
+
+    /**
+     * Read back what a previous host process left.
+     * Following appends continue the sequence.
+     */
+    public synchronized Recovery recover() throws IOException
+    {
+        long start = System.nanoTime();
+        MapM map = null;
+        PlayersM players = null;
+        Map<String, Long> requests = new HashMap<>();
+        ArrayList<Action> actions = new ArrayList<>();
+        // Latest snapshot.
+        File[] snapshots = list(SNAPSHOT_SUFFIX);
+
+        if (snapshots.length > 0)
+        {
+            try (RandomAccessFile file = new RandomAccessFile(snapshots[snapshots.length - 1], "r"))
+            {
+                byte[] data = new byte[(int) file.length()];
+                file.readFully(data);
+                Snapshot snapshot = SerializationUtils.deserialize(data);
+                map = snapshot.mMap;
+                players = snapshot.mPlayers;
+
+                if (snapshot.mRequests != null)
+                {
+                    requests = snapshot.mRequests;
+                }
+
+                mSnapshotSequence = snapshot.mSequence;
+                mSequence = snapshot.mSequence;
+            }
+        }
+        // Then the actions which came after it.
+        for (File segment : list(SEGMENT_SUFFIX))
+        {
+            try (RandomAccessFile file = new RandomAccessFile(segment, "r"))
+            {
+                MappedByteBuffer buffer = file.getChannel()
+                        .map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+                while (buffer.remaining() >= HEADER_SIZE)
+                {
+                    int length = buffer.getInt();
+
+                    if (length <= 0 || buffer.remaining() < Long.BYTES + length)
+                    {
+                        // End of the segment (or torn record).
+                        break;
+                    }
+
+                    long sequence = buffer.getLong();
+                    byte[] body = new byte[length];
+                    buffer.get(body);
+
+                    if (sequence > mSnapshotSequence)
+                    {
+                        actions.add(SerializationUtils.deserialize(body));
+                        mSequence = sequence;
+                    }
+                }
+            }
+        }
+
+        RECOVERY.recordSince(start);
+        Log.info(Log.Category.HOST, "journal recovered actions", actions.size());
+
+        return new Recovery(map, players, requests, actions);
+    }
+
+    public synchronized void close()
+    {
+        if (mSegment != null)
+        {
+            mSegment.force();
+            mSegment = null;
+        }
+    }
+
+    private void roll(int size) throws IOException
+    {
+        if (mSegment != null)
+        {
+            mSegment.force();
+        }
+
+        File file = new File(mDirectory, name(mSequence + 1, SEGMENT_SUFFIX));
+        // Leftover of a crash without any valid record: start from zeros.
+        if (file.exists() && ! file.delete())
+        {
+            throw new IOException("can't reset segment " + file);
+        }
+
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw"))
+        {
+            mSegment = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(SEGMENT_SIZE, size));
+        }
+    }
+
+    /**
+     * Delete the segments and snapshots older than the last snapshot.
+     */
+    private void compact()
+    {
+        File[] segments = list(SEGMENT_SUFFIX);
+        // A segment only holds old actions if the next one starts before the snapshot.
+        for (int i = 0; i < segments.length - 1; i ++)
+        {
+            if (sequenceOf(segments[i + 1]) <= mSnapshotSequence + 1)
+            {
+                delete(segments[i]);
+            }
+        }
+
+        File[] snapshots = list(SNAPSHOT_SUFFIX);
+
+        for (int i = 0; i < snapshots.length - 1; i ++)
+        {
+            delete(snapshots[i]);
+        }
+    }
+
+    /**
+     * @return the files with the given suffix, sorted by sequence number.
+     */
+    private File[] list(String suffix)
+    {
+        File[] files = mDirectory.listFiles((d, n) -> n.endsWith(suffix));
+
+        if (files == null)
+        {
+            return new File[0];
+        }
+        // Names are zero padded.
+        Arrays.sort(files);
+
+        return files;
+    }
+
+    private static void delete(File file)
+    {
+        if (! file.delete())
+        {
+            Log.error(Log.Category.HOST, "can't delete", file);
+        }
+    }
+
+    private static String name(long sequence, String suffix)
+    {
+        return String.format("%020d%s", sequence, suffix);
+    }
+
+    private static long sequenceOf(File file)
+    {
+        String name = file.getName();
+
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+}
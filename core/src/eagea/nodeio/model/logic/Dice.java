@@ -0,0 +1,55 @@
+package eagea.nodeio.model.logic;
+
+import java.util.Random;
+
+/**
+ * Source of all the randomness of the game logic (map generation, player
+ * appearance, host election...).
+ * It is seeded so that a host can be replayed deterministically from a
+ * capture of its requests (see eagea.nodeio.model.rabbitmq.Capture).
+ */
+public class Dice
+{
+    private static volatile long mSeed = System.nanoTime();
+    private static volatile Random mRandom = new Random(mSeed);
+
+    private Dice() { }
+
+    /**
+     * @return a value in [0, 1), like Math.random().
+     */
+    public static double roll()
+    {
+        return mRandom.nextDouble();
+    }
+
+    /**
+     * @return an index in [0, n).
+     */
+    public static int pick(int n)
+    {
+        return (int) (roll() * n);
+    }
+
+    public static synchronized void setSeed(long seed)
+    {
+        mSeed = seed;
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Restart from a new random seed.
+     * @return the new seed.
+     */
+    public static synchronized long reseed()
+    {
+        setSeed(System.nanoTime() ^ mRandom.nextLong());
+
+        return mSeed;
+    }
+
+    public static long getSeed()
+    {
+        return mSeed;
+    }
+}
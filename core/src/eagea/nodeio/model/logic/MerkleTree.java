@@ -0,0 +1,130 @@
+package eagea.nodeio.model.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import eagea.nodeio.model.logic.map.MapM;
+import eagea.nodeio.model.logic.player.PlayerM;
+import eagea.nodeio.model.logic.player.PlayersM;
+
+/**
+ * Hash tree of the game state, to find which zones differ between two nodes
+ * by sending only a few hashes (see StateDigest).
+ * One leaf per zone: its content and the players on it. The number of leaves
+ * is a power of two, padded with empty ones, and the nodes are stored as a
+ * heap (node n has children 2n and 2n + 1, the root is 1).
+ */
+public class MerkleTree
+{
+    private final int mWidth;
+    private final long[] mNodes;
+
+    public MerkleTree(MapM map, PlayersM players)
+    {
+        this(map, players, widthOf(map.getNbZones()));
+    }
+
+    /**
+     * @param width number of leaves, the one of the tree to compare with.
+     */
+    public MerkleTree(MapM map, PlayersM players, int width)
+    {
+        mWidth = width;
+        mNodes = new long[2 * width];
+        // Leaves; players are summed so that their order does not matter.
+        for (int i = 0; i < Math.min(width, map.getNbZones()); i ++)
+        {
+            mNodes[width + i] = StateHash.of(map.get(i));
+        }
+
+        for (PlayerM player : players.getPlayers())
+        {
+            if (player.getZone() < width)
+            {
+                mNodes[width + player.getZone()] += StateHash.of(player);
+            }
+        }
+        // Inner nodes.
+        for (int n = width - 1; n >= 1; n --)
+        {
+            mNodes[n] = StateHash.mix(StateHash.mix(n, mNodes[2 * n]), mNodes[2 * n + 1]);
+        }
+    }
+
+    private static int widthOf(int nbZones)
+    {
+        int width = 1;
+
+        while (width < nbZones)
+        {
+            width *= 2;
+        }
+
+        return width;
+    }
+
+    public int getWidth()
+    {
+        return mWidth;
+    }
+
+    public long getRoot()
+    {
+        return mNodes[1];
+    }
+
+    /**
+     * @return the nodes of the first levels of the tree (heap order, without
+     * the unused index 0).
+     */
+    public long[] getTop(int levels)
+    {
+        int size = Math.min((1 << levels) - 1, mNodes.length - 1);
+        long[] top = new long[size];
+        System.arraycopy(mNodes, 1, top, 0, size);
+
+        return top;
+    }
+
+    /**
+     * Compare with the first levels of another tree of the same width.
+     * @return the ranges of zones [from, to[ which differ, the smallest ones
+     * the given levels can tell.
+     */
+    public List<int[]> diff(long[] top)
+    {
+        List<int[]> ranges = new ArrayList<>();
+
+        diff(top, 1, ranges);
+
+        return ranges;
+    }
+
+    private void diff(long[] top, int n, List<int[]> ranges)
+    {
+        if (mNodes[n] == top[n - 1])
+        {
+            return;
+        }
+
+        if (2 * n + 1 <= top.length)
+        {
+            diff(top, 2 * n, ranges);
+            diff(top, 2 * n + 1, ranges);
+            return;
+        }
+        // Deepest known level: the leaves under node n.
+        int level = 31 - Integer.numberOfLeadingZeros(n);
+        int span = mWidth >> level;
+        int from = (n - (1 << level)) * span;
+        // Merge with the previous range if adjacent.
+        if (! ranges.isEmpty() && ranges.get(ranges.size() - 1)[1] == from)
+        {
+            ranges.get(ranges.size() - 1)[1] = from + span;
+        }
+        else
+        {
+            ranges.add(new int[] { from, from + span });
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package eagea.nodeio.model.logic;
+
+import eagea.nodeio.model.logic.map.CellM;
+import eagea.nodeio.model.logic.map.MapM;
+import eagea.nodeio.model.logic.map.ZoneM;
+import eagea.nodeio.model.logic.player.PlayerM;
+import eagea.nodeio.model.logic.player.PlayersM;
+
+/**
+ * 64 bits FNV-1a hashes of the game state, to check that two nodes have the
+ * same map and players without sending them.
+ */
+public class StateHash
+{
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private StateHash() { }
+
+    public static long of(MapM map, PlayersM players)
+    {
+        long hash = OFFSET;
+
+        for (ZoneM zone : map.getZones())
+        {
+            hash = mix(hash, of(zone));
+        }
+
+        for (PlayerM player : players.getPlayers())
+        {
+            hash = mix(hash, of(player));
+        }
+
+        return hash;
+    }
+
+    /**
+     * Zone content: owner, type and cells.
+     */
+    public static long of(ZoneM zone)
+    {
+        long hash = mix(OFFSET, zone.getOwner());
+        hash = mix(hash, zone.getType().ordinal());
+        hash = mix(hash, zone.getPositionInMap());
+
+        for (CellM[] row : zone.getCells())
+        {
+            for (CellM cell : row)
+            {
+                hash = mix(hash, cell.getType().ordinal());
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Player identity and position.
+     */
+    public static long of(PlayerM player)
+    {
+        long hash = mix(OFFSET, player.getID());
+        hash = mix(hash, player.getZone());
+        hash = mix(hash, player.getI());
+        hash = mix(hash, player.getJ());
+
+        return mix(hash, player.getColor().ordinal());
+    }
+
+    public static long mix(long hash, long value)
+    {
+        for (int i = 0; i < Long.BYTES; i ++)
+        {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= PRIME;
+        }
+
+        return hash;
+    }
+
+    public static long mix(long hash, String value)
+    {
+        if (value == null)
+        {
+            return mix(hash, 0L);
+        }
+
+        for (int i = 0; i < value.length(); i ++)
+        {
+            hash ^= value.charAt(i);
+            hash *= PRIME;
+        }
+
+        return hash;
+    }
+}
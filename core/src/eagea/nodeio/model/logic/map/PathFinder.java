@@ -0,0 +1,224 @@
+package eagea.nodeio.model.logic.map;
+
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import eagea.nodeio.model.logic.player.PlayerM;
+
+/**
+ * Host only.
+ * A* over the cells of the whole map grid (see PlayerM.getMapPosition), to
+ * walk a player to a cell with one request (see Model.checkPathMove). A cell
+ * is walkable if it is empty (no bush, not void) and nobody is on it.
+ */
+public class PathFinder
+{
+    // Longest path, and most cells looked at, before giving up.
+    private static final int MAX_STEPS = Integer.getInteger("nodeio.path.max", 64);
+    private static final int MAX_NODES = Integer.getInteger("nodeio.path.nodes", 4096);
+    // Cells per line of the whole map.
+    private static final int WIDTH = MapM.ZONE_LINE * ZoneM.SIZE;
+
+    /**
+     * Steps left to reach a cell.
+     */
+    public static class Path
+    {
+        private final int mX;
+        private final int mY;
+        private final ArrayDeque<PlayerM.Event> mSteps;
+
+        private Path(int x, int y, ArrayDeque<PlayerM.Event> steps)
+        {
+            mX = x;
+            mY = y;
+            mSteps = steps;
+        }
+
+        /**
+         * @return the cell to reach, in the whole map.
+         */
+        public Vector2 getTarget()
+        {
+            return new Vector2(mX, mY);
+        }
+
+        public PlayerM.Event peek()
+        {
+            return mSteps.peek();
+        }
+
+        public PlayerM.Event poll()
+        {
+            return mSteps.poll();
+        }
+
+        public int getLength()
+        {
+            return mSteps.size();
+        }
+    }
+
+    /**
+     * A cell to look at, and its cost estimate.
+     */
+    private static class Node implements Comparable<Node>
+    {
+        private final int mCell;
+        private final int mCost;
+
+        private Node(int cell, int cost)
+        {
+            mCell = cell;
+            mCost = cost;
+        }
+
+        @Override
+        public int compareTo(Node other)
+        {
+            return Integer.compare(mCost, other.mCost);
+        }
+    }
+
+    private PathFinder() { }
+
+    /**
+     * @param occupied the cells with a player on them (see getCell).
+     * @return the shortest path, or null if there is none short enough.
+     */
+    public static Path find(MapM map, Vector2 from, Vector2 to, Set<Integer> occupied)
+    {
+        int start = getCell((int) from.x, (int) from.y);
+        int goal = getCell((int) to.x, (int) to.y);
+
+        if (start == goal || ! isWalkable(map, (int) to.x, (int) to.y)
+                || occupied.contains(goal))
+        {
+            return null;
+        }
+
+        HashMap<Integer, Integer> costs = new HashMap<>();
+        HashMap<Integer, Integer> previous = new HashMap<>();
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        costs.put(start, 0);
+        open.add(new Node(start, distance(start, goal)));
+        int looked = 0;
+
+        while (! open.isEmpty() && looked ++ < MAX_NODES)
+        {
+            Node node = open.poll();
+
+            if (node.mCell == goal)
+            {
+                return new Path((int) to.x, (int) to.y, getSteps(previous, start, goal));
+            }
+
+            int cost = costs.get(node.mCell) + 1;
+
+            if (cost > MAX_STEPS)
+            {
+                continue;
+            }
+
+            for (PlayerM.Event event : PlayerM.Event.values())
+            {
+                int x = node.mCell / WIDTH + getDeltaX(event);
+                int y = node.mCell % WIDTH + getDeltaY(event);
+
+                if (! isWalkable(map, x, y))
+                {
+                    continue;
+                }
+
+                int next = getCell(x, y);
+
+                if (occupied.contains(next) || cost >= costs.getOrDefault(next, Integer.MAX_VALUE))
+                {
+                    continue;
+                }
+
+                costs.put(next, cost);
+                previous.put(next, node.mCell);
+                open.add(new Node(next, cost + distance(next, goal)));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the key of a cell of the whole map.
+     */
+    public static int getCell(int x, int y)
+    {
+        return x * WIDTH + y;
+    }
+
+    /**
+     * @return the cell change of a move (see PlayerM.moveLeft...).
+     */
+    public static int getDeltaX(PlayerM.Event event)
+    {
+        switch (event)
+        {
+            case UP: return 1;
+            case DOWN: return -1;
+            default: return 0;
+        }
+    }
+
+    public static int getDeltaY(PlayerM.Event event)
+    {
+        switch (event)
+        {
+            case LEFT: return 1;
+            case RIGHT: return -1;
+            default: return 0;
+        }
+    }
+
+    private static boolean isWalkable(MapM map, int x, int y)
+    {
+        if (x < 0 || y < 0 || y >= WIDTH)
+        {
+            return false;
+        }
+
+        int zone = x / ZoneM.SIZE * MapM.ZONE_LINE + y / ZoneM.SIZE;
+
+        return zone < map.getNbZones() && map.get(zone).getCells()
+                [x % ZoneM.SIZE][y % ZoneM.SIZE].getType() == CellM.Type.EMPTY;
+    }
+
+    private static int distance(int from, int to)
+    {
+        return Math.abs(from / WIDTH - to / WIDTH) + Math.abs(from % WIDTH - to % WIDTH);
+    }
+
+    private static ArrayDeque<PlayerM.Event> getSteps(HashMap<Integer, Integer> previous,
+                                                      int start, int goal)
+    {
+        ArrayDeque<PlayerM.Event> steps = new ArrayDeque<>();
+
+        for (int cell = goal; cell != start; cell = previous.get(cell))
+        {
+            int from = previous.get(cell);
+            int dx = cell / WIDTH - from / WIDTH;
+            int dy = cell % WIDTH - from % WIDTH;
+
+            for (PlayerM.Event event : PlayerM.Event.values())
+            {
+                if (getDeltaX(event) == dx && getDeltaY(event) == dy)
+                {
+                    steps.addFirst(event);
+                }
+            }
+        }
+
+        return steps;
+    }
+}
@@ -6,6 +6,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Observable;
 
+import eagea.nodeio.model.logic.Dice;
+
 /**
  * A zone of the game map.
  */
@@ -54,16 +56,16 @@ public class ZoneM extends Observable implements Serializable
             }
         }
         // Get void cells.
-        for (int i = 0; i < Math.random() * MAX_CELL_VOID; i ++)
+        for (int i = 0; i < Dice.roll() * MAX_CELL_VOID; i ++)
         {
-            Vector2 void_cell = indexes.get((int) (Math.random() * indexes.size()));
+            Vector2 void_cell = indexes.get(Dice.pick(indexes.size()));
             indexes.remove(void_cell);
             mCells[(int) void_cell.x][(int) void_cell.y].setType(CellM.Type.VOID);
         }
         // Get bush cells.
-        for (int i = 0; i < Math.random() * MAX_CELL_BUSH; i ++)
+        for (int i = 0; i < Dice.roll() * MAX_CELL_BUSH; i ++)
         {
-            Vector2 bush_cell = indexes.get((int) (Math.random() * indexes.size()));
+            Vector2 bush_cell = indexes.get(Dice.pick(indexes.size()));
             indexes.remove(bush_cell);
             mCells[(int) bush_cell.x][(int) bush_cell.y].setType(CellM.Type.BUSH);
         }
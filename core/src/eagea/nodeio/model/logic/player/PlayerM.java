@@ -5,6 +5,7 @@ import com.badlogic.gdx.math.Vector2;
 import java.io.Serializable;
 import java.util.Observable;
 
+import eagea.nodeio.model.logic.Dice;
 import eagea.nodeio.model.logic.map.CellM;
 import eagea.nodeio.model.logic.map.MapM;
 import eagea.nodeio.model.logic.map.ZoneM;
@@ -34,14 +35,24 @@ public class PlayerM extends Observable implements Serializable
     private Speak mSentence;
     // Current environment.
     private final MapM mMap;
+    // Digest of her/his session token (see Model.checkResume).
+    private String mSession;
 
     public PlayerM(String ID, int i, int j, int zone, MapM map)
+    {
+        this(ID, i, j, zone, Color.values()[Dice.pick(Color.values().length)], map);
+    }
+
+    /**
+     * Copy of a player known by another node (see Repair).
+     */
+    public PlayerM(String ID, int i, int j, int zone, Color color, MapM map)
     {
         mID = ID;
         mPosition = new Vector2(i, j);
         mZone = zone;
         mMap = map;
-        mColor = Color.values()[(int) (Math.random() * Color.values().length)];
+        mColor = color;
     }
 
     public boolean moveRight()
@@ -204,6 +215,15 @@ public class PlayerM extends Observable implements Serializable
         return true;
     }
 
+    /**
+     * Set the position, without any move animation.
+     */
+    public void place(int i, int j, int zone)
+    {
+        mPosition.set(i, j);
+        mZone = zone;
+    }
+
     public void speak(Speak sentence)
     {
         mSentence = sentence;
@@ -264,6 +284,16 @@ public class PlayerM extends Observable implements Serializable
         return (int) mPosition.x;
     }
 
+    public void setSession(String session)
+    {
+        mSession = session;
+    }
+
+    public String getSession()
+    {
+        return mSession;
+    }
+
     public Color getColor()
     {
         return mColor;
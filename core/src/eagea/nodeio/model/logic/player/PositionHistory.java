@@ -0,0 +1,79 @@
+package eagea.nodeio.model.logic.player;
+
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Host only.
+ * Last positions of each player (in the full map grid), to know where they
+ * were a moment ago (see Model.checkCatch).
+ */
+public class PositionHistory
+{
+    // Positions kept per player.
+    private static final int SIZE = 32;
+
+    /**
+     * Ring buffer of a player positions, and since when she/he was there.
+     */
+    private static class Track
+    {
+        private final long[] mTimes = new long[SIZE];
+        private final Vector2[] mPositions = new Vector2[SIZE];
+        private int mCount;
+    }
+
+    // Each track is only written by the moves of its player, but they may be
+    // checked by different threads (see Model.check).
+    private final Map<String, Track> mTracks;
+
+    public PositionHistory()
+    {
+        mTracks = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The player is at her/his current position since the given time.
+     */
+    public void record(PlayerM player, long time)
+    {
+        Track track = mTracks.computeIfAbsent(player.getID(), ID -> new Track());
+        int k = track.mCount % SIZE;
+        track.mTimes[k] = time;
+        track.mPositions[k] = player.getMapPosition();
+        track.mCount ++;
+    }
+
+    public void forget(String ID)
+    {
+        mTracks.remove(ID);
+    }
+
+    /**
+     * @return where the player was at the given time; the oldest known
+     * position if older, the current one if unknown.
+     */
+    public Vector2 getAt(PlayerM player, long time)
+    {
+        Track track = mTracks.get(player.getID());
+
+        if (track == null)
+        {
+            return player.getMapPosition();
+        }
+
+        int oldest = Math.max(0, track.mCount - SIZE);
+
+        for (int n = track.mCount - 1; n >= oldest; n --)
+        {
+            if (track.mTimes[n % SIZE] <= time || n == oldest)
+            {
+                return track.mPositions[n % SIZE];
+            }
+        }
+
+        return player.getMapPosition();
+    }
+}
@@ -0,0 +1,397 @@
+package eagea.nodeio.model.matchmaking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import eagea.nodeio.metrics.Counter;
+import eagea.nodeio.metrics.Histogram;
+import eagea.nodeio.metrics.Metrics;
+
+/**
+ * Decide in which room a joining player goes (no transport here, see
+ * MatchmakerService).
+ * Host processes report the occupancy of their rooms (see RoomServer).
+ * Players are grouped by latency bucket (round trip to the broker), and put
+ * in the fullest room of their bucket which still has a seat, so that rooms
+ * fill up instead of spreading players thinly. If there is none, a new room
+ * is opened on the least loaded host. Hosts above their capacity get no
+ * more players; hosts which stopped reporting are forgotten, with their
+ * rooms, and so are the rooms left empty.
+ * Seats given are counted until the next report of the room, so that a burst
+ * of joins does not overfill it.
+ */
+public class Matchmaker
+{
+    // Players per room, and per host process.
+    public static final int ROOM_CAPACITY = Integer.getInteger("nodeio.matchmaker.room", 8);
+    public static final int HOST_CAPACITY = Integer.getInteger("nodeio.matchmaker.host", 200);
+    // Hosts without report for this delay are considered dead (ms).
+    private static final long HOST_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("nodeio.matchmaker.timeout", 5000));
+    // Latency buckets upper bounds (ms); one more bucket for the slower ones.
+    private static final long[] BUCKETS = parse(
+            System.getProperty("nodeio.matchmaker.buckets", "50,150"));
+
+    // Metrics.
+    private static final Histogram PLACE = Metrics.histogram("matchmaker.place.ns");
+    private static final Counter OPENED = Metrics.counter("matchmaker.rooms.opened");
+    private static final Counter UNAVAILABLE = Metrics.counter("matchmaker.unavailable");
+    private static final Counter EVICTED = Metrics.counter("matchmaker.hosts.evicted");
+    private static final Counter EMPTIED = Metrics.counter("matchmaker.rooms.emptied");
+
+    /**
+     * Where a player goes.
+     */
+    public static class Placement
+    {
+        private final String mRoom;
+        private final String mHost;
+        private final int mBucket;
+        // The host has to open the room first.
+        private final boolean mIsNew;
+
+        private Placement(Room room, boolean isNew)
+        {
+            mRoom = room.mName;
+            mHost = room.mHost.mID;
+            mBucket = room.mBucket;
+            mIsNew = isNew;
+        }
+
+        public String getRoom()
+        {
+            return mRoom;
+        }
+
+        public String getHost()
+        {
+            return mHost;
+        }
+
+        public int getBucket()
+        {
+            return mBucket;
+        }
+
+        public boolean isNew()
+        {
+            return mIsNew;
+        }
+    }
+
+    private static class Host
+    {
+        private final String mID;
+        private final HashSet<Room> mRooms;
+        private long mReportedAt;
+
+        private Host(String ID)
+        {
+            mID = ID;
+            mRooms = new HashSet<>();
+        }
+
+        private int getPlayers()
+        {
+            int players = 0;
+
+            for (Room room : mRooms)
+            {
+                players += room.getPlayers();
+            }
+
+            return players;
+        }
+    }
+
+    private static class Room
+    {
+        private final String mName;
+        private final Host mHost;
+        private final int mBucket;
+        // As last reported, and seats given since.
+        private int mPlayers;
+        private int mReserved;
+
+        private Room(String name, Host host, int bucket)
+        {
+            mName = name;
+            mHost = host;
+            mBucket = bucket;
+        }
+
+        private int getPlayers()
+        {
+            return mPlayers + mReserved;
+        }
+    }
+
+    private final Map<String, Host> mHosts;
+    private final Map<String, Room> mRooms;
+    // Rooms with seats left, per bucket.
+    private final List<List<Room>> mOpenRooms;
+
+    public Matchmaker()
+    {
+        mHosts = new HashMap<>();
+        mRooms = new HashMap<>();
+        mOpenRooms = new ArrayList<>();
+
+        for (int i = 0; i < getBuckets(); i ++)
+        {
+            mOpenRooms.add(new ArrayList<>());
+        }
+        // Metrics.
+        Metrics.gauge("matchmaker.hosts", () -> getHosts().size());
+        Metrics.gauge("matchmaker.rooms", () -> getRoomCount());
+    }
+
+    /**
+     * A host tells it is alive and, if room is not null, how many players
+     * are in it.
+     */
+    public synchronized void onReport(String hostID, String room, int bucket, int players,
+                                      long now)
+    {
+        Host host = mHosts.computeIfAbsent(hostID, Host::new);
+        host.mReportedAt = now;
+
+        if (room == null)
+        {
+            return;
+        }
+
+        Room known = mRooms.get(room);
+
+        if (players == 0 && (known == null || known.mReserved == 0))
+        {
+            // Empty, and nobody placed in it since the last report (a room
+            // just opened is kept until its first player is there).
+            if (known != null)
+            {
+                remove(known);
+                EMPTIED.increment();
+            }
+
+            return;
+        }
+
+        if (known == null)
+        {
+            // Opened without us (e.g. restarted host).
+            known = new Room(room, host, Math.min(Math.max(bucket, 0), mOpenRooms.size() - 1));
+            mRooms.put(room, known);
+            host.mRooms.add(known);
+        }
+
+        known.mPlayers = players;
+        known.mReserved = 0;
+        updateOpen(known);
+    }
+
+    /**
+     * Forget a host and its rooms (e.g. its process is gone).
+     */
+    public synchronized void onHostLeft(String hostID)
+    {
+        Host host = mHosts.remove(hostID);
+
+        if (host == null)
+        {
+            return;
+        }
+
+        for (Room room : host.mRooms)
+        {
+            mRooms.remove(room.mName);
+            mOpenRooms.get(room.mBucket).remove(room);
+        }
+    }
+
+    /**
+     * Forget the hosts which stopped reporting.
+     */
+    private void evict(long now)
+    {
+        ArrayList<String> dead = new ArrayList<>();
+
+        for (Host host : mHosts.values())
+        {
+            if (! isAlive(host, now))
+            {
+                dead.add(host.mID);
+            }
+        }
+
+        for (String hostID : dead)
+        {
+            onHostLeft(hostID);
+            EVICTED.increment();
+        }
+    }
+
+    private void remove(Room room)
+    {
+        mRooms.remove(room.mName);
+        room.mHost.mRooms.remove(room);
+        mOpenRooms.get(room.mBucket).remove(room);
+    }
+
+    /**
+     * @return where to put a player of the given latency bucket, or null if
+     * no host can take them.
+     */
+    public synchronized Placement place(int bucket, long now)
+    {
+        long start = System.nanoTime();
+        bucket = Math.min(Math.max(bucket, 0), mOpenRooms.size() - 1);
+        evict(now);
+        // Fullest open room first.
+        Room best = null;
+
+        for (Room room : mOpenRooms.get(bucket))
+        {
+            if (room.mHost.getPlayers() >= HOST_CAPACITY)
+            {
+                continue;
+            }
+
+            if (best == null || room.getPlayers() > best.getPlayers())
+            {
+                best = room;
+            }
+        }
+
+        boolean isNew = false;
+
+        if (best == null)
+        {
+            Host host = getLeastLoaded(now);
+
+            if (host == null)
+            {
+                UNAVAILABLE.increment();
+                return null;
+            }
+
+            best = new Room(UUID.randomUUID().toString().substring(0, 8), host, bucket);
+            mRooms.put(best.mName, best);
+            host.mRooms.add(best);
+            mOpenRooms.get(bucket).add(best);
+            isNew = true;
+            OPENED.increment();
+        }
+
+        best.mReserved ++;
+        updateOpen(best);
+
+        PLACE.recordSince(start);
+
+        return new Placement(best, isNew);
+    }
+
+    /**
+     * @return the players (reported and placed) per live host.
+     */
+    public synchronized Collection<Integer> getHosts()
+    {
+        ArrayList<Integer> loads = new ArrayList<>();
+        long now = System.nanoTime();
+
+        for (Host host : mHosts.values())
+        {
+            if (isAlive(host, now))
+            {
+                loads.add(host.getPlayers());
+            }
+        }
+
+        return loads;
+    }
+
+    public synchronized int getRoomCount()
+    {
+        return mRooms.size();
+    }
+
+    /**
+     * @param roundTrip round trip to the broker (ns).
+     */
+    public static int bucketOf(long roundTrip)
+    {
+        long millis = TimeUnit.NANOSECONDS.toMillis(roundTrip);
+
+        for (int i = 0; i < BUCKETS.length; i ++)
+        {
+            if (millis <= BUCKETS[i])
+            {
+                return i;
+            }
+        }
+
+        return BUCKETS.length;
+    }
+
+    public static int getBuckets()
+    {
+        return BUCKETS.length + 1;
+    }
+
+    private Host getLeastLoaded(long now)
+    {
+        Host best = null;
+        int bestPlayers = 0;
+
+        for (Host host : mHosts.values())
+        {
+            int players = host.getPlayers();
+
+            if (isAlive(host, now) && players < HOST_CAPACITY
+                    && (best == null || players < bestPlayers))
+            {
+                best = host;
+                bestPlayers = players;
+            }
+        }
+
+        return best;
+    }
+
+    private void updateOpen(Room room)
+    {
+        List<Room> open = mOpenRooms.get(room.mBucket);
+
+        if (room.getPlayers() >= ROOM_CAPACITY)
+        {
+            open.remove(room);
+        }
+        else if (! open.contains(room))
+        {
+            open.add(room);
+        }
+    }
+
+    private static boolean isAlive(Host host, long now)
+    {
+        return now - host.mReportedAt <= HOST_TIMEOUT;
+    }
+
+    private static long[] parse(String value)
+    {
+        String[] parts = value.split(",");
+        long[] bounds = new long[parts.length];
+
+        for (int i = 0; i < parts.length; i ++)
+        {
+            bounds[i] = Long.parseLong(parts[i].trim());
+        }
+
+        return bounds;
+    }
+}
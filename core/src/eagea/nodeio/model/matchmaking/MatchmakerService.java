@@ -0,0 +1,151 @@
+package eagea.nodeio.model.matchmaking;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Delivery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.model.rabbitmq.Codec;
+import eagea.nodeio.model.rabbitmq.Node;
+import eagea.nodeio.model.rabbitmq.action.Action;
+import eagea.nodeio.model.rabbitmq.action.JoinRequest;
+import eagea.nodeio.model.rabbitmq.action.OpenRoom;
+import eagea.nodeio.model.rabbitmq.action.Placement;
+import eagea.nodeio.model.rabbitmq.action.RoomReport;
+
+/**
+ * Run a Matchmaker over RabbitMQ.
+ * Host processes send room reports, and players join requests, to the
+ * matchmaker queue; players are answered with the direct reply-to of
+ * RabbitMQ (see Node.findRoom). When a new room is needed, its host process
+ * is asked to open it (see RoomServer), and the players placed in it are
+ * only answered once it reports the room, so that they do not become its
+ * host themselves.
+ */
+public class MatchmakerService
+{
+    private final Matchmaker mMatchmaker;
+    private Connection mConnection;
+    private Channel mChannel;
+    // Join requests waiting for their room to be opened, per room.
+    private final Map<String, List<Delivery>> mWaiting;
+
+    public MatchmakerService()
+    {
+        mMatchmaker = new Matchmaker();
+        mWaiting = new HashMap<>();
+    }
+
+    public void start() throws Exception
+    {
+        mConnection = Node.newConnection();
+        mChannel = mConnection.createChannel();
+        mChannel.queueDeclare(Node.MATCHMAKER_QUEUE_URI, false, false, false, null);
+        // Deliveries of a channel are handled one at a time: no lock needed.
+        mChannel.basicConsume(Node.MATCHMAKER_QUEUE_URI, true,
+                this::onReceive,
+                consumerTag -> { });
+        Log.info(Log.Category.HOST, "matchmaker started");
+    }
+
+    public void close()
+    {
+        try
+        {
+            mChannel.close();
+            mConnection.close();
+        }
+        catch (Exception e)
+        {
+            Log.error(Log.Category.NETWORK, "matchmaker close", e);
+        }
+    }
+
+    private void onReceive(String consumerTag, Delivery delivery) throws IOException
+    {
+        Action action;
+
+        try
+        {
+            action = Codec.decode(delivery);
+        }
+        catch (DataFormatException e)
+        {
+            Log.error(Log.Category.NETWORK, "corrupted matchmaking action", e);
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if (action instanceof RoomReport)
+        {
+            RoomReport report = (RoomReport) action;
+            mMatchmaker.onReport(report.getPlayer(), report.getRoom(),
+                    report.getBucket(), report.getPlayers(), now);
+            // The room is open now.
+            List<Delivery> waiting = mWaiting.remove(report.getRoom());
+
+            if (waiting != null)
+            {
+                for (Delivery request : waiting)
+                {
+                    reply(request, report.getRoom());
+                }
+            }
+        }
+        else if (action instanceof JoinRequest)
+        {
+            Matchmaker.Placement placement = mMatchmaker.place(
+                    ((JoinRequest) action).getBucket(), now);
+
+            if (placement == null)
+            {
+                reply(delivery, null);
+            }
+            else if (placement.isNew())
+            {
+                List<Delivery> waiting = new ArrayList<>();
+                waiting.add(delivery);
+                mWaiting.put(placement.getRoom(), waiting);
+
+                Codec.Message message = Codec.encode(new OpenRoom(placement.getHost(),
+                        placement.getRoom(), placement.getBucket()));
+                mChannel.basicPublish("", Node.SERVER_QUEUE_URI + placement.getHost(),
+                        message.getProperties(),
+                        message.getBody());
+                Log.info(Log.Category.HOST, "room opened", placement.getRoom());
+            }
+            else if (mWaiting.containsKey(placement.getRoom()))
+            {
+                mWaiting.get(placement.getRoom()).add(delivery);
+            }
+            else
+            {
+                reply(delivery, placement.getRoom());
+            }
+        }
+    }
+
+    private void reply(Delivery request, String room) throws IOException
+    {
+        String replyTo = request.getProperties().getReplyTo();
+
+        if (replyTo == null)
+        {
+            return;
+        }
+
+        Codec.Message message = Codec.encode(new Placement(
+                Codec.getPlayer(request.getProperties()), room));
+        mChannel.basicPublish("", replyTo,
+                message.getProperties(),
+                message.getBody());
+    }
+}
@@ -0,0 +1,178 @@
+package eagea.nodeio.model.matchmaking;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Delivery;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.journal.Journal;
+import eagea.nodeio.model.rabbitmq.Codec;
+import eagea.nodeio.model.rabbitmq.Node;
+import eagea.nodeio.model.rabbitmq.action.Action;
+import eagea.nodeio.model.rabbitmq.action.OpenRoom;
+import eagea.nodeio.model.rabbitmq.action.RoomReport;
+
+/**
+ * A headless host process serving the rooms the matchmaker asks it to open
+ * (see MatchmakerService), each one with its own Model and journal.
+ * It reports the players of its rooms periodically, and right after opening
+ * one.
+ */
+public class RoomServer
+{
+    // Reports period (ms).
+    private static final long REPORT_PERIOD = Long.getLong("nodeio.matchmaker.report", 1000);
+
+    /**
+     * A room served by this process.
+     */
+    private static class Room
+    {
+        private final Model mModel;
+        private final Journal mJournal;
+        private final int mBucket;
+
+        private Room(Model model, Journal journal, int bucket)
+        {
+            mModel = model;
+            mJournal = journal;
+            mBucket = bucket;
+        }
+    }
+
+    private final String mID;
+    // Where the rooms journals go, one directory per room.
+    private final File mJournals;
+    private final Map<String, Room> mRooms;
+    private Connection mConnection;
+    private Channel mChannel;
+    private ScheduledExecutorService mScheduler;
+
+    public RoomServer(File journals)
+    {
+        mID = UUID.randomUUID().toString().substring(0, 8);
+        mJournals = journals;
+        mRooms = new ConcurrentHashMap<>();
+    }
+
+    public void start() throws Exception
+    {
+        mConnection = Node.newConnection();
+        mChannel = mConnection.createChannel();
+        // Gone with us: the matchmaker stops placing players here once our
+        // reports stop.
+        mChannel.queueDeclare(Node.SERVER_QUEUE_URI + mID, false, true, true, null);
+        mChannel.basicConsume(Node.SERVER_QUEUE_URI + mID, true,
+                this::onReceive,
+                consumerTag -> { });
+
+        mScheduler = Executors.newSingleThreadScheduledExecutor(r ->
+                {
+                    Thread thread = new Thread(r, "room reports");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        mScheduler.scheduleAtFixedRate(this::report,
+                0, REPORT_PERIOD, TimeUnit.MILLISECONDS);
+        Log.info(Log.Category.HOST, "room server started", mID);
+    }
+
+    public void close()
+    {
+        mScheduler.shutdownNow();
+
+        for (Room room : mRooms.values())
+        {
+            room.mModel.shutDownHook();
+            room.mJournal.close();
+        }
+
+        try
+        {
+            mChannel.close();
+            mConnection.close();
+        }
+        catch (Exception e)
+        {
+            Log.error(Log.Category.NETWORK, "room server close", e);
+        }
+    }
+
+    private void onReceive(String consumerTag, Delivery delivery)
+    {
+        Action action;
+
+        try
+        {
+            action = Codec.decode(delivery);
+        }
+        catch (DataFormatException e)
+        {
+            Log.error(Log.Category.NETWORK, "corrupted room server action", e);
+            return;
+        }
+
+        if (action instanceof OpenRoom)
+        {
+            OpenRoom open = (OpenRoom) action;
+            Journal journal = new Journal(new File(mJournals, open.getRoom()));
+            Model model = new Model(null);
+            model.setRoom(open.getRoom());
+
+            if (model.goToServer(journal))
+            {
+                mRooms.put(open.getRoom(), new Room(model, journal, open.getBucket()));
+                Log.info(Log.Category.HOST, "room hosted", open.getRoom());
+            }
+
+            report();
+        }
+    }
+
+    /**
+     * Tell the matchmaker the players of each room (or only that we are
+     * alive, without rooms).
+     */
+    private synchronized void report()
+    {
+        try
+        {
+            if (mRooms.isEmpty())
+            {
+                publish(new RoomReport(mID, null, 0, 0));
+                return;
+            }
+
+            for (Map.Entry<String, Room> entry : mRooms.entrySet())
+            {
+                Room room = entry.getValue();
+                publish(new RoomReport(mID, entry.getKey(), room.mBucket,
+                        room.mModel.getPlayers().getNbPlayers()));
+            }
+        }
+        catch (IOException e)
+        {
+            Log.error(Log.Category.NETWORK, "room report", e);
+        }
+    }
+
+    private void publish(Action action) throws IOException
+    {
+        Codec.Message message = Codec.encode(action);
+        mChannel.basicPublish("", Node.MATCHMAKER_QUEUE_URI,
+                message.getProperties(),
+                message.getBody());
+    }
+}
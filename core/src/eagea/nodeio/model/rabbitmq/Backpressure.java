@@ -0,0 +1,42 @@
+package eagea.nodeio.model.rabbitmq;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slow down our moves when the host is overloaded, from the load it tells in
+ * its heartbeats: the minimum interval between two moves doubles while the
+ * host is late, and decreases slowly once it caught up.
+ */
+public class Backpressure
+{
+    // Host load thresholds: requests waiting, and time to check one (ns).
+    private static final int HIGH_BACKLOG = Integer.getInteger("nodeio.backpressure.backlog", 100);
+    private static final long HIGH_LATENCY = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("nodeio.backpressure.latency", 200));
+    // Interval bounds (ns).
+    private static final long MIN_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long MAX_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    // 0 if not throttled.
+    private long mInterval;
+
+    public synchronized void onHostLoad(int backlog, long latency)
+    {
+        if (backlog > HIGH_BACKLOG || latency > HIGH_LATENCY)
+        {
+            mInterval = Math.min(MAX_INTERVAL, Math.max(MIN_INTERVAL, mInterval * 2));
+        }
+        else if (backlog < HIGH_BACKLOG / 2 && latency < HIGH_LATENCY / 2)
+        {
+            mInterval = mInterval * 3 / 4 < MIN_INTERVAL ? 0 : mInterval * 3 / 4;
+        }
+    }
+
+    /**
+     * @return the minimum interval between two moves (ns).
+     */
+    public synchronized long getInterval()
+    {
+        return mInterval;
+    }
+}
@@ -0,0 +1,89 @@
+package eagea.nodeio.model.rabbitmq;
+
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.model.rabbitmq.action.Action;
+
+/**
+ * Host only.
+ * The last actions broadcast, by rank, so that a player back from a pause
+ * only gets the ones she/he missed (see Model.checkResume).
+ * They are kept encoded, as sent: some carry the live map and players
+ * (e.g. Connection), which have changed since.
+ */
+public class BroadcastLog
+{
+    private static final int SIZE = Integer.getInteger("nodeio.session.backlog", 1024);
+
+    private final Codec.Message[] mRing;
+    // Rank of the last broadcast.
+    private long mLast;
+
+    public BroadcastLog()
+    {
+        mRing = new Codec.Message[SIZE];
+    }
+
+    /**
+     * @return the rank of the next broadcast (see put).
+     */
+    public synchronized long next()
+    {
+        mLast ++;
+        mRing[(int) (mLast % SIZE)] = null;
+
+        return mLast;
+    }
+
+    /**
+     * Keep a broadcast to give it again (those which are not given again
+     * are just not put).
+     */
+    public synchronized void put(long rank, Codec.Message message)
+    {
+        if (mLast - rank < SIZE)
+        {
+            mRing[(int) (rank % SIZE)] = message;
+        }
+    }
+
+    /**
+     * @return the actions broadcast after the given rank, or null if some
+     * of them are not kept anymore.
+     */
+    public synchronized ArrayList<Action> since(long rank)
+    {
+        if (rank > mLast || mLast - rank > SIZE)
+        {
+            return null;
+        }
+
+        ArrayList<Action> actions = new ArrayList<>((int) (mLast - rank));
+
+        for (long i = rank + 1; i <= mLast; i ++)
+        {
+            Codec.Message message = mRing[(int) (i % SIZE)];
+
+            if (message == null)
+            {
+                continue;
+            }
+
+            try
+            {
+                actions.add(Codec.decode(message.getBody(),
+                        Codec.isDeflated(message.getProperties())));
+            }
+            catch (DataFormatException e)
+            {
+                // Then ask for a Sync.
+                Log.error(Log.Category.HOST, "broadcast log", e);
+                return null;
+            }
+        }
+
+        return actions;
+    }
+}
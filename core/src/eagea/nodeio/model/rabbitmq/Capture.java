@@ -0,0 +1,102 @@
+package eagea.nodeio.model.rabbitmq;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.model.logic.Dice;
+import eagea.nodeio.model.logic.map.MapM;
+import eagea.nodeio.model.logic.player.PlayersM;
+import eagea.nodeio.model.rabbitmq.action.Connection;
+
+/**
+ * Host only.
+ * Record the traffic of a host to a file, so that it can be replayed later
+ * (see Replay) to reproduce a production load.
+ * The file starts with the seed of the game randomness (reset when the
+ * capture starts), the host ID and the state of the game at this time.
+ * Then come the requests received and the actions broadcast, with their time
+ * and encoded bytes. It ends with the hash of the final state.
+ */
+public class Capture
+{
+    static final int MAGIC = 0x4e494f43; // "NIOC".
+    static final int VERSION = 2;
+    // Record types.
+    static final byte REQUEST = 1;
+    static final byte BROADCAST = 2;
+    static final byte END = 3;
+
+    private final DataOutputStream mOutput;
+    private final long mStart;
+
+    /**
+     * Start a capture; the game randomness is re-seeded from now on.
+     */
+    public Capture(String path, String hostID, MapM map, PlayersM players) throws IOException
+    {
+        mOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+        mStart = System.nanoTime();
+
+        byte[] state = SerializationUtils.serialize(new Connection(hostID, map, players));
+        mOutput.writeInt(MAGIC);
+        mOutput.writeInt(VERSION);
+        mOutput.writeLong(Dice.reseed());
+        mOutput.writeLong(mStart);
+        mOutput.writeUTF(hostID);
+        mOutput.writeInt(state.length);
+        mOutput.write(state);
+    }
+
+    /**
+     * @param time when the host received it (see Node.now).
+     */
+    public void request(long time, byte[] body, boolean deflated)
+    {
+        write(REQUEST, time, body, deflated);
+    }
+
+    public void broadcast(byte[] body, boolean deflated)
+    {
+        write(BROADCAST, System.nanoTime(), body, deflated);
+    }
+
+    /**
+     * Stop the capture.
+     * @param hash the hash of the final state (see StateHash).
+     */
+    public synchronized void close(long hash)
+    {
+        try
+        {
+            mOutput.writeByte(END);
+            mOutput.writeLong(System.nanoTime() - mStart);
+            mOutput.writeLong(hash);
+            mOutput.close();
+        }
+        catch (IOException e)
+        {
+            Log.error(Log.Category.HOST, "capture close", e);
+        }
+    }
+
+    private synchronized void write(byte type, long time, byte[] body, boolean deflated)
+    {
+        try
+        {
+            mOutput.writeByte(type);
+            mOutput.writeLong(time - mStart);
+            mOutput.writeBoolean(deflated);
+            mOutput.writeInt(body.length);
+            mOutput.write(body);
+        }
+        catch (IOException e)
+        {
+            Log.error(Log.Category.HOST, "capture", e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package eagea.nodeio.model.rabbitmq;
+
+/**
+ * Estimate the round trip time to the host, from our own requests coming
+ * back (see Action.getAskedAt), and the offset between the host clock and
+ * ours, from the host heartbeats. Both are smoothed as TCP does (1/8 gain).
+ * Times are from System.nanoTime().
+ */
+public class ClockEstimator
+{
+    // 0 if unknown.
+    private long mRoundTrip;
+    // Host clock minus ours.
+    private long mOffset;
+    private boolean mHasOffset;
+
+    public synchronized void onRoundTrip(long roundTrip)
+    {
+        mRoundTrip = mRoundTrip == 0 ? roundTrip : mRoundTrip + (roundTrip - mRoundTrip) / 8;
+    }
+
+    /**
+     * @param hostTime when the host sent a message, on its clock.
+     * @param now when we received it.
+     */
+    public synchronized void onHostTime(long hostTime, long now)
+    {
+        if (mRoundTrip == 0)
+        {
+            // Can't tell the transit time yet.
+            return;
+        }
+
+        long offset = hostTime + mRoundTrip / 2 - now;
+        mOffset = mHasOffset ? mOffset + (offset - mOffset) / 8 : offset;
+        mHasOffset = true;
+    }
+
+    public synchronized boolean isReady()
+    {
+        return mHasOffset;
+    }
+
+    public synchronized long getRoundTrip()
+    {
+        return mRoundTrip;
+    }
+
+    public synchronized long getOffset()
+    {
+        return mOffset;
+    }
+
+    /**
+     * @return the given time of our clock on the host one.
+     */
+    public synchronized long toHostTime(long time)
+    {
+        return time + mOffset;
+    }
+}
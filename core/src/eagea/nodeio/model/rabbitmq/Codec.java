@@ -0,0 +1,248 @@
+package eagea.nodeio.model.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Delivery;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import eagea.nodeio.metrics.Histogram;
+import eagea.nodeio.metrics.Metrics;
+import eagea.nodeio.model.rabbitmq.action.Action;
+
+/**
+ * Convert actions to message bodies and back.
+ * Small actions (moves, speaks...) are sent as is, while the ones bigger than
+ * a threshold (mainly connections, which carry the whole map and players) are
+ * deflated. Compressed messages are flagged with the "deflate" content
+ * encoding so that receivers know they have to inflate them.
+ * The threshold can be tuned with the "nodeio.compression.threshold" system
+ * property (in bytes), looking at the "codec.[Action].ratio.permille" and
+ * "codec.[Action].deflate.ns" metrics.
+ * Messages also tell their action type and player, so that they can be
+ * filtered without being deserialized (see RateLimiter).
+ * Inflated messages are rejected past "nodeio.compression.max" bytes, so
+ * that a small message cannot exhaust the memory of its receivers.
+ */
+public class Codec
+{
+    public static final String DEFLATE = "deflate";
+    // Header of the player who sent the action.
+    public static final String PLAYER = "player";
+
+    private static final int THRESHOLD = Integer.getInteger("nodeio.compression.threshold", 512);
+    // Largest inflated message (bytes).
+    private static final int MAX_INFLATED = Integer.getInteger("nodeio.compression.max", 8 << 20);
+
+    // Deflater and Inflater hold native buffers: one of each per thread.
+    private static final ThreadLocal<Deflater> mDeflater = new ThreadLocal<Deflater>()
+    {
+        @Override
+        protected Deflater initialValue()
+        {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+    private static final ThreadLocal<Inflater> mInflater = new ThreadLocal<Inflater>()
+    {
+        @Override
+        protected Inflater initialValue()
+        {
+            return new Inflater();
+        }
+    };
+    // Metrics, per action class.
+    private static final Map<Class<?>, Histogram> mRatios = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Histogram> mDeflateTimes = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Histogram> mInflateTimes = new ConcurrentHashMap<>();
+
+    /**
+     * An encoded action, ready to be published.
+     */
+    public static class Message
+    {
+        private final byte[] mBody;
+        private final AMQP.BasicProperties mProperties;
+
+        private Message(byte[] body, AMQP.BasicProperties properties)
+        {
+            mBody = body;
+            mProperties = properties;
+        }
+
+        public byte[] getBody()
+        {
+            return mBody;
+        }
+
+        public AMQP.BasicProperties getProperties()
+        {
+            return mProperties;
+        }
+    }
+
+    private Codec() { }
+
+    public static Message encode(Action action)
+    {
+        byte[] body = SerializationUtils.serialize(action);
+        AMQP.BasicProperties.Builder properties = new AMQP.BasicProperties.Builder()
+                .type(action.getClass().getSimpleName())
+                .priority(action.getPriority())
+                .headers(Collections.singletonMap(PLAYER, action.getPlayer()));
+
+        if (body.length < THRESHOLD)
+        {
+            return new Message(body, properties.build());
+        }
+
+        long start = System.nanoTime();
+        byte[] compressed = deflate(body);
+        // Wall clock time of a CPU bound task (no thread CPU time on Android).
+        mDeflateTimes.computeIfAbsent(action.getClass(),
+                c -> Metrics.histogram("codec." + c.getSimpleName() + ".deflate.ns"))
+                .recordSince(start);
+        mRatios.computeIfAbsent(action.getClass(),
+                c -> Metrics.histogram("codec." + c.getSimpleName() + ".ratio.permille"))
+                .record(compressed.length * 1000L / body.length);
+
+        if (compressed.length >= body.length)
+        {
+            // Not worth it.
+            return new Message(body, properties.build());
+        }
+
+        return new Message(compressed, properties.contentEncoding(DEFLATE).build());
+    }
+
+    public static Action decode(Delivery delivery) throws DataFormatException
+    {
+        return decode(delivery.getBody(), isDeflated(delivery.getProperties()));
+    }
+
+    public static Action decode(byte[] body, boolean deflated) throws DataFormatException
+    {
+        if (! deflated)
+        {
+            return deserialize(body);
+        }
+
+        long start = System.nanoTime();
+        byte[] inflated = inflate(body);
+        Action action = deserialize(inflated);
+        mInflateTimes.computeIfAbsent(action.getClass(),
+                c -> Metrics.histogram("codec." + c.getSimpleName() + ".inflate.ns"))
+                .recordSince(start);
+
+        return action;
+    }
+
+    /**
+     * @throws DataFormatException if the data is not an action, so that it
+     * is dropped like a corrupted message (it may come from anybody).
+     */
+    private static Action deserialize(byte[] data) throws DataFormatException
+    {
+        Object object;
+
+        try
+        {
+            object = SerializationUtils.deserialize(data);
+        }
+        catch (SerializationException e)
+        {
+            throw new DataFormatException("not serialized: " + e.getMessage());
+        }
+
+        if (! (object instanceof Action))
+        {
+            throw new DataFormatException("not an action");
+        }
+
+        return (Action) object;
+    }
+
+    public static boolean isDeflated(AMQP.BasicProperties properties)
+    {
+        return properties != null && DEFLATE.equals(properties.getContentEncoding());
+    }
+
+    /**
+     * @return the action class simple name, or null if unknown.
+     */
+    public static String getType(AMQP.BasicProperties properties)
+    {
+        return properties == null ? null : properties.getType();
+    }
+
+    /**
+     * @return the ID of the player who sent the action, or null if unknown.
+     */
+    public static String getPlayer(AMQP.BasicProperties properties)
+    {
+        if (properties == null || properties.getHeaders() == null)
+        {
+            return null;
+        }
+
+        Object player = properties.getHeaders().get(PLAYER);
+        // Strings are received as LongString.
+        return player == null ? null : player.toString();
+    }
+
+    private static byte[] deflate(byte[] data)
+    {
+        Deflater deflater = mDeflater.get();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2);
+        byte[] buffer = new byte[4096];
+
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        while (! deflater.finished())
+        {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+
+        return output.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException
+    {
+        Inflater inflater = mInflater.get();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(
+                (int) Math.min((long) data.length * 4, MAX_INFLATED));
+        byte[] buffer = new byte[4096];
+
+        inflater.reset();
+        inflater.setInput(data);
+
+        while (! inflater.finished())
+        {
+            int n = inflater.inflate(buffer);
+
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            {
+                throw new DataFormatException("truncated message");
+            }
+
+            if (output.size() + n > MAX_INFLATED)
+            {
+                throw new DataFormatException("message too big once inflated");
+            }
+
+            output.write(buffer, 0, n);
+        }
+
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,164 @@
+package eagea.nodeio.model.rabbitmq;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.metrics.Counter;
+import eagea.nodeio.metrics.Histogram;
+import eagea.nodeio.metrics.Metrics;
+
+/**
+ * Decide when to take the role of a failed host (see Node.onHeartbeatTick).
+ * The host is suspected when its heartbeats stop (see FailureDetector); then
+ * its role is claimed like at startup (see Node.checkIfHost), the elected
+ * node first, the others a bit later if nobody took it. A claim is only made
+ * once nobody consumes the host queue (the broker drops the consumer of a
+ * dead host), and only one is accepted while the lease is held, so that
+ * neither a host wrongly suspected nor two nodes with different views make
+ * two hosts.
+ * The broker and the clock are behind Context, so that the same decisions
+ * can be checked offline (see FailoverChaos).
+ */
+public class Failover
+{
+    /**
+     * What the failover needs from its node.
+     */
+    public interface Context
+    {
+        String getID();
+
+        boolean isHost();
+
+        /**
+         * @return true if in a game (a node which left does not take over).
+         */
+        boolean isPlaying();
+
+        /**
+         * @return the node to take over first (see Model.elect).
+         */
+        String elect(String host, Set<String> standbys);
+
+        /**
+         * @return true if someone consumes the host queue.
+         */
+        boolean hasHost() throws Exception;
+
+        /**
+         * @return true if our claim of the host role is the one accepted.
+         */
+        boolean claimHost() throws Exception;
+
+        /**
+         * Our claim was accepted: become the host.
+         * @return true if we took over.
+         */
+        boolean takeOver(String host);
+
+        /**
+         * Run the task after the given delay (ms).
+         */
+        void schedule(Runnable task, long delay);
+
+        /**
+         * @return the time (ns), as System.nanoTime.
+         */
+        long now();
+    }
+
+    // Metrics.
+    private static final Counter HOST_FAILURES = Metrics.counter("failover.suspected");
+    // From the last heartbeat of the dead host to the new host taking over.
+    private static final Histogram TAKEOVER = Metrics.histogram("failover.takeover.ns");
+
+    private final FailureDetector mDetector;
+    private final Context mContext;
+    // Claim lease, pause between two claims, delay before the nodes which
+    // are not elected claim too, and heartbeats period (ms).
+    private final long mLease;
+    private final long mRetry;
+    private final long mGrace;
+    private final long mPeriod;
+
+    public Failover(FailureDetector detector, Context context,
+                    long lease, long retry, long grace, long period)
+    {
+        mDetector = detector;
+        mContext = context;
+        mLease = lease;
+        mRetry = retry;
+        mGrace = grace;
+        mPeriod = period;
+    }
+
+    /**
+     * @return true if our heartbeats go to everybody: the host and the
+     * standbys are watched by all, the players only tell the host they are
+     * alive.
+     */
+    public static boolean isWatched(boolean isHost, boolean isStandby)
+    {
+        return isHost || isStandby;
+    }
+
+    /**
+     * At each heartbeat: handle the host failure, if suspected.
+     */
+    public void check(long now)
+    {
+        if (mContext.isHost() || ! mDetector.isHostSuspected(now))
+        {
+            return;
+        }
+
+        String host = mDetector.getHost();
+        long lastSeen = mDetector.getHostLastSeen();
+        HOST_FAILURES.increment();
+        Log.info(Log.Category.HOST, "host suspected", host);
+        // Handle it once.
+        mDetector.forgetHost();
+        String elected = mContext.elect(host, mDetector.getAliveStandbys(now));
+
+        if (elected == null)
+        {
+            return;
+        }
+
+        long delay = elected.equals(mContext.getID()) ? 0 : mGrace;
+        long deadline = now + TimeUnit.MILLISECONDS.toNanos(delay + 2 * mLease);
+        mContext.schedule(() -> takeOver(host, lastSeen, deadline), delay);
+    }
+
+    private void takeOver(String host, long lastSeen, long deadline)
+    {
+        if (mContext.isHost() || mDetector.getHost() != null || ! mContext.isPlaying())
+        {
+            // A new host is heard of (or we left).
+            return;
+        }
+
+        try
+        {
+            if (! mContext.hasHost() && mContext.claimHost())
+            {
+                if (mContext.takeOver(host))
+                {
+                    TAKEOVER.record(mContext.now() - lastSeen);
+                }
+
+                return;
+            }
+        }
+        catch (Exception e)
+        {
+            Log.error(Log.Category.HOST, "host claim", e);
+        }
+        // Still consumed or claimed (by the dead host until the broker
+        // notices, or by another node): try again until a new host is
+        // heard of, at the heartbeats pace after a while.
+        long retry = mContext.now() - deadline < 0 ? mRetry : mPeriod;
+        mContext.schedule(() -> takeOver(host, lastSeen, deadline), retry);
+    }
+}
@@ -0,0 +1,107 @@
+package eagea.nodeio.model.rabbitmq;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import eagea.nodeio.model.rabbitmq.action.Heartbeat;
+
+/**
+ * Keep track of the last heartbeat received from each node: a node is
+ * suspected to have failed if it has not been heard of for a given timeout.
+ * The players hear of the host and the standbys, the host of the players.
+ * Times are from System.nanoTime().
+ */
+public class FailureDetector
+{
+    private final long mTimeout;
+    // Last heartbeat time per node.
+    private final Map<String, Long> mLastSeen;
+    // Nodes ready to take over the host role.
+    private final Set<String> mStandbys;
+    // Current host, and when it was last seen.
+    private String mHost;
+    private long mHostLastSeen;
+
+    public FailureDetector(long timeout)
+    {
+        mTimeout = timeout;
+        mLastSeen = new HashMap<>();
+        mStandbys = new HashSet<>();
+    }
+
+    public synchronized void onHeartbeat(Heartbeat heartbeat, long now)
+    {
+        mLastSeen.put(heartbeat.getPlayer(), now);
+
+        if (heartbeat.isStandby())
+        {
+            mStandbys.add(heartbeat.getPlayer());
+        }
+        else
+        {
+            mStandbys.remove(heartbeat.getPlayer());
+        }
+
+        if (heartbeat.isHost())
+        {
+            mHost = heartbeat.getPlayer();
+            mHostLastSeen = now;
+        }
+    }
+
+    public synchronized boolean isHostSuspected(long now)
+    {
+        return mHost != null && now - mHostLastSeen > mTimeout;
+    }
+
+    public synchronized String getHost()
+    {
+        return mHost;
+    }
+
+    public synchronized long getHostLastSeen()
+    {
+        return mHostLastSeen;
+    }
+
+    /**
+     * The host failure has been handled; wait for the heartbeats of the new one.
+     */
+    public synchronized void forgetHost()
+    {
+        mLastSeen.remove(mHost);
+        mHost = null;
+    }
+
+    /**
+     * @return the nodes which are not suspected.
+     */
+    public synchronized Set<String> getAlive(long now)
+    {
+        Set<String> alive = new HashSet<>();
+
+        mLastSeen.forEach((n, t) ->
+                {
+                    if (now - t <= mTimeout)
+                    {
+                        alive.add(n);
+                    }
+                }
+        );
+
+        return alive;
+    }
+
+    /**
+     * @return the standbys which are not suspected.
+     */
+    public synchronized Set<String> getAliveStandbys(long now)
+    {
+        Set<String> alive = getAlive(now);
+        alive.retainAll(mStandbys);
+
+        return alive;
+    }
+}
@@ -0,0 +1,159 @@
+package eagea.nodeio.model.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Delivery;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eagea.nodeio.model.rabbitmq.action.Action;
+import eagea.nodeio.model.rabbitmq.action.Move;
+
+/**
+ * Host only.
+ * Requests received and not checked yet, one queue per lane (see
+ * Action.getPriority). They are taken by batches, the high priority ones
+ * first, so that the host can skip the moves which are not worth checking
+ * anymore when it is late (see Node.onHostWork).
+ */
+public class Inbox
+{
+    /**
+     * A received request.
+     */
+    public static class Request
+    {
+        private final Delivery mDelivery;
+        // Where to acknowledge it.
+        private final Channel mChannel;
+        private final Action mAction;
+        private final long mReceivedAt;
+        // Superseded by later moves of the same player.
+        private boolean mIsCoalesced;
+        // Last move of its player in the batch.
+        private boolean mIsLast;
+
+        public Request(Delivery delivery, Channel channel, Action action, long receivedAt)
+        {
+            mDelivery = delivery;
+            mChannel = channel;
+            mAction = action;
+            mReceivedAt = receivedAt;
+        }
+
+        public Delivery getDelivery()
+        {
+            return mDelivery;
+        }
+
+        public Channel getChannel()
+        {
+            return mChannel;
+        }
+
+        public Action getAction()
+        {
+            return mAction;
+        }
+
+        public long getReceivedAt()
+        {
+            return mReceivedAt;
+        }
+
+        public boolean isCoalesced()
+        {
+            return mIsCoalesced;
+        }
+
+        public boolean isLast()
+        {
+            return mIsLast;
+        }
+    }
+
+    private final List<ArrayDeque<Request>> mLanes;
+
+    public Inbox()
+    {
+        mLanes = new ArrayList<>();
+        mLanes.add(new ArrayDeque<>());
+        mLanes.add(new ArrayDeque<>());
+    }
+
+    public synchronized void put(Request request)
+    {
+        mLanes.get(request.getAction().getPriority()).add(request);
+        notifyAll();
+    }
+
+    /**
+     * Wait for requests, and take them all (high priority ones first).
+     * In the batch, only the last moves of each player are kept, the older
+     * ones are flagged as coalesced, and the last one is flagged as such.
+     * @param moves moves kept per player.
+     */
+    public synchronized List<Request> take(int moves) throws InterruptedException
+    {
+        while (isEmpty())
+        {
+            wait();
+        }
+
+        List<Request> batch = new ArrayList<>(size());
+
+        for (int lane = mLanes.size() - 1; lane >= 0; lane --)
+        {
+            batch.addAll(mLanes.get(lane));
+            mLanes.get(lane).clear();
+        }
+        // Newest first.
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = batch.size() - 1; i >= 0; i --)
+        {
+            Request request = batch.get(i);
+
+            if (request.getAction() instanceof Move)
+            {
+                int count = counts.merge(request.getAction().getPlayer(), 1, Integer::sum);
+                request.mIsCoalesced = count > moves;
+                request.mIsLast = count == 1;
+            }
+        }
+
+        return batch;
+    }
+
+    /**
+     * Drop the requests (e.g. received on a lost connection, they are
+     * delivered again).
+     */
+    public synchronized void clear()
+    {
+        for (ArrayDeque<Request> lane : mLanes)
+        {
+            lane.clear();
+        }
+    }
+
+    public synchronized int size()
+    {
+        int size = 0;
+
+        for (ArrayDeque<Request> lane : mLanes)
+        {
+            size += lane.size();
+        }
+
+        return size;
+    }
+
+    private boolean isEmpty()
+    {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,199 @@
+package eagea.nodeio.model.rabbitmq;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.metrics.Counter;
+import eagea.nodeio.metrics.Metrics;
+
+/**
+ * Host only.
+ * Token buckets per player and action type, so that a player sending too many
+ * requests (spam, bug...) can't saturate the host. The limit of an action type
+ * is set with the "nodeio.limit.[Action]" system property, as "rate,burst"
+ * (requests per second, and requests in a row); types without limit are
+ * always allowed.
+ * The buckets kept are bounded: past MAX_BUCKETS, the least recently used
+ * one is forgotten (it is full again). They count their rejected requests,
+ * to know the players who get limited the most (see getOffenders).
+ */
+public class RateLimiter
+{
+    // Default limits: far above what a player does by hand.
+    private static final String[][] DEFAULTS =
+            {
+                    { "Move", "20,10" },
+                    { "PathMove", "5,5" },
+                    { "Speak", "2,3" },
+                    { "Catch", "4,2" },
+            };
+    // Buckets unused for this long are full again: forget them.
+    private static final long IDLE = TimeUnit.MINUTES.toNanos(1);
+    private static final int PURGE_PERIOD = 4096;
+    private static final int MAX_BUCKETS = Integer.getInteger("nodeio.limit.buckets", 4096);
+    // Rejected requests of a bucket from which its player is logged.
+    private static final long OFTEN = 16;
+
+    /**
+     * Rate (per nanosecond) and burst of an action type.
+     */
+    private static class Limit
+    {
+        private final double mRate;
+        private final double mBurst;
+        private final Counter mRejected;
+
+        private Limit(String type, double rate, double burst)
+        {
+            mRate = rate / TimeUnit.SECONDS.toNanos(1);
+            mBurst = burst;
+            mRejected = Metrics.counter("limit.rejected." + type);
+        }
+    }
+
+    private static class Bucket
+    {
+        private final String mPlayer;
+        private double mTokens;
+        private long mLast;
+        private long mRejected;
+
+        private Bucket(String player)
+        {
+            mPlayer = player;
+        }
+    }
+
+    private final Map<String, Limit> mLimits;
+    private final Map<String, Bucket> mBuckets;
+    private int mCalls;
+
+    public RateLimiter()
+    {
+        mLimits = new HashMap<>();
+        // By last use.
+        mBuckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest)
+            {
+                return size() > MAX_BUCKETS;
+            }
+        };
+
+        for (String[] limit : DEFAULTS)
+        {
+            String[] values = System.getProperty("nodeio.limit." + limit[0], limit[1]).split(",");
+            mLimits.put(limit[0], new Limit(limit[0], Double.parseDouble(values[0]),
+                    Double.parseDouble(values[1])));
+        }
+    }
+
+    /**
+     * Check a request before knowing who really sent it: nothing is taken
+     * from the bucket, nor created.
+     * @param type the action class simple name.
+     * @return true if the player has no request left now.
+     */
+    public synchronized boolean isExhausted(String player, String type, long now)
+    {
+        Limit limit = mLimits.get(type);
+        Bucket bucket = limit == null ? null : mBuckets.get(player + '/' + type);
+
+        return bucket != null
+                && bucket.mTokens + (now - bucket.mLast) * limit.mRate < 1;
+    }
+
+    /**
+     * @param type the action class simple name.
+     * @return true if the player can do this request now.
+     */
+    public synchronized boolean allow(String player, String type, long now)
+    {
+        Limit limit = mLimits.get(type);
+
+        if (limit == null)
+        {
+            return true;
+        }
+
+        if (++ mCalls % PURGE_PERIOD == 0)
+        {
+            purge(now);
+        }
+
+        String key = player + '/' + type;
+        Bucket bucket = mBuckets.get(key);
+
+        if (bucket == null)
+        {
+            bucket = new Bucket(player);
+            bucket.mTokens = limit.mBurst;
+            bucket.mLast = now;
+            mBuckets.put(key, bucket);
+        }
+        // Refill.
+        bucket.mTokens = Math.min(limit.mBurst,
+                bucket.mTokens + (now - bucket.mLast) * limit.mRate);
+        bucket.mLast = now;
+
+        if (bucket.mTokens < 1)
+        {
+            limit.mRejected.increment();
+            bucket.mRejected ++;
+            Log.debug(Log.Category.HOST, "rate limited", player);
+
+            if (bucket.mRejected >= OFTEN && (bucket.mRejected & (bucket.mRejected - 1)) == 0)
+            {
+                // Each time the count doubles: names the offenders in the logs.
+                Log.info(Log.Category.HOST, "often rate limited", player);
+            }
+
+            return false;
+        }
+
+        bucket.mTokens --;
+        return true;
+    }
+
+    /**
+     * @return the rejected requests of the players limited the most (among
+     * the buckets kept), at most count of them, the most limited first.
+     */
+    public synchronized List<Map.Entry<String, Long>> getOffenders(int count)
+    {
+        Map<String, Long> rejected = new HashMap<>();
+
+        for (Bucket bucket : mBuckets.values())
+        {
+            if (bucket.mRejected > 0)
+            {
+                rejected.merge(bucket.mPlayer, bucket.mRejected, Long::sum);
+            }
+        }
+
+        List<Map.Entry<String, Long>> offenders = new ArrayList<>(rejected.entrySet());
+        offenders.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        return offenders.subList(0, Math.min(count, offenders.size()));
+    }
+
+    private void purge(long now)
+    {
+        Iterator<Bucket> buckets = mBuckets.values().iterator();
+
+        while (buckets.hasNext())
+        {
+            if (now - buckets.next().mLast > IDLE)
+            {
+                buckets.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package eagea.nodeio.model.rabbitmq;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.logic.Dice;
+import eagea.nodeio.model.rabbitmq.action.Connection;
+
+/**
+ * Feed the requests of a capture (see Capture) to a fresh offline host, either
+ * as fast as possible or at their original pace, and check that it ends in
+ * the same state as the recorded one.
+ */
+public class Replay
+{
+    /**
+     * Outcome of a replay.
+     */
+    public static class Result
+    {
+        private final int mRequests;
+        private final int mBroadcasts;
+        private final long mDuration;
+        private final long mExpectedHash;
+        private final long mHash;
+
+        private Result(int requests, int broadcasts, long duration, long expectedHash, long hash)
+        {
+            mRequests = requests;
+            mBroadcasts = broadcasts;
+            mDuration = duration;
+            mExpectedHash = expectedHash;
+            mHash = hash;
+        }
+
+        public int getRequests() { return mRequests; }
+
+        /**
+         * @return the number of actions broadcast by the recorded host.
+         */
+        public int getBroadcasts() { return mBroadcasts; }
+
+        /**
+         * @return the replay duration, in nanoseconds.
+         */
+        public long getDuration() { return mDuration; }
+
+        public double getThroughput()
+        {
+            return mDuration == 0 ? 0 : mRequests * 1e9 / mDuration;
+        }
+
+        /**
+         * @return true if the replayed state is the recorded one.
+         */
+        public boolean isMatching() { return mExpectedHash == mHash; }
+
+        @Override
+        public String toString()
+        {
+            return mRequests + " requests (" + mBroadcasts + " broadcasts recorded) in "
+                    + mDuration / 1_000_000 + " ms: " + (long) getThroughput() + " requests/s, "
+                    + "state " + (isMatching() ? "matches" : "DIFFERS")
+                    + String.format(" (%016x / %016x)", mHash, mExpectedHash);
+        }
+    }
+
+    private Replay() { }
+
+    /**
+     * @param paced if true, wait between requests as the recorded host did.
+     */
+    public static Result run(String path, boolean paced) throws IOException, DataFormatException
+    {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(path))))
+        {
+            if (input.readInt() != Capture.MAGIC || input.readInt() != Capture.VERSION)
+            {
+                throw new IOException("not a capture: " + path);
+            }
+            // Same randomness and initial state as the recorded host.
+            Dice.setSeed(input.readLong());
+            long origin = input.readLong();
+            String hostID = input.readUTF();
+            byte[] state = new byte[input.readInt()];
+            input.readFully(state);
+            Connection initial = SerializationUtils.deserialize(state);
+            Model model = new Model(null);
+            model.goToReplay(hostID, initial.getMap(), initial.getPlayers());
+            // Replay requests.
+            int requests = 0;
+            int broadcasts = 0;
+            long expectedHash;
+            long start = System.nanoTime();
+
+            while (true)
+            {
+                byte type = input.readByte();
+                long time = input.readLong();
+
+                if (type == Capture.END)
+                {
+                    expectedHash = input.readLong();
+                    break;
+                }
+
+                boolean deflated = input.readBoolean();
+                byte[] body = new byte[input.readInt()];
+                input.readFully(body);
+
+                if (type == Capture.BROADCAST)
+                {
+                    broadcasts ++;
+                    continue;
+                }
+
+                if (paced)
+                {
+                    pace(start, time);
+                }
+
+                // Same host clock as recorded.
+                model.setTime(origin + time);
+                model.check(Codec.decode(body, deflated));
+                requests ++;
+            }
+
+            return new Result(requests, broadcasts, System.nanoTime() - start,
+                    expectedHash, model.hashState());
+        }
+        catch (EOFException e)
+        {
+            throw new IOException("truncated capture (host still running?): " + path, e);
+        }
+    }
+
+    private static void pace(long start, long time)
+    {
+        long wait = time - (System.nanoTime() - start);
+
+        if (wait > 0)
+        {
+            try
+            {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -7,10 +7,26 @@ import java.io.Serializable;
  */
 public abstract class Action implements Serializable
 {
+    // Priority lanes (see getPriority).
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_HIGH = 1;
+
     private static final long serialVersionUID = 48659982445051210L;
 
     // The player identified with it's ID
     private final String mPlayer;
+    // When the sender asked for it (sender clock, to measure round trips).
+    private long mAskedAt;
+    // When the sender sent it, on the host clock (0 if unknown).
+    private long mSentAt;
+    // Rank of the request among the ones of its sender (0 if not a request).
+    private long mSequence;
+    // Declined by the host, which only tells its sender.
+    private boolean mIsRejected;
+    // The host which broadcast it, and its rank among its broadcasts (see
+    // Resume).
+    private String mBroadcaster;
+    private long mBroadcast;
 
     public Action(String ID)
     {
@@ -21,4 +37,97 @@ public abstract class Action implements Serializable
     {
         return mPlayer;
     }
+
+    public void setAskedAt(long time)
+    {
+        mAskedAt = time;
+    }
+
+    public long getAskedAt()
+    {
+        return mAskedAt;
+    }
+
+    /**
+     * @return the lane of the action: the control ones (connections,
+     * catches...) overtake the movement traffic in the host queue.
+     */
+    public int getPriority()
+    {
+        return PRIORITY_LOW;
+    }
+
+    /**
+     * @return the sender sequence the action belongs to (one per lane, as
+     * lanes do not keep the order between them).
+     */
+    public String getSequenceKey()
+    {
+        return mPlayer + '#' + getPriority();
+    }
+
+    public void setSentAt(long sentAt)
+    {
+        mSentAt = sentAt;
+    }
+
+    public long getSentAt()
+    {
+        return mSentAt;
+    }
+
+    public void setSequence(long sequence)
+    {
+        mSequence = sequence;
+    }
+
+    public long getSequence()
+    {
+        return mSequence;
+    }
+
+    /**
+     * Host only.
+     * Decline the action, but still send it (e.g. so that its sender can
+     * undo what it predicted).
+     */
+    public void reject()
+    {
+        mIsRejected = true;
+    }
+
+    public boolean isRejected()
+    {
+        return mIsRejected;
+    }
+
+    public void setBroadcast(String host, long broadcast)
+    {
+        mBroadcaster = host;
+        mBroadcast = broadcast;
+    }
+
+    public String getBroadcaster()
+    {
+        return mBroadcaster;
+    }
+
+    public long getBroadcast()
+    {
+        return mBroadcast;
+    }
+
+    /**
+     * Host only.
+     * Keep the metadata of the request this action answers, so that its
+     * sender (and the replicas) can match them.
+     * @return this action.
+     */
+    public Action inherit(Action request)
+    {
+        mAskedAt = request.mAskedAt;
+        mSequence = request.mSequence;
+
+        return this;
+    }
 }
@@ -11,6 +11,8 @@ public class Catch extends Action
     private static final long serialVersionUID = 2505852453794582472L;
 
     private final ArrayList<String> mCaught;
+    // When the state the player saw was sent, on the host clock (0 if unknown).
+    private long mViewTime;
 
     /**
      * Sent by the player to request.
@@ -34,4 +36,20 @@ public class Catch extends Action
     {
         return mCaught;
     }
-}
\ No newline at end of file
+
+    public void setViewTime(long viewTime)
+    {
+        mViewTime = viewTime;
+    }
+
+    public long getViewTime()
+    {
+        return mViewTime;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY_HIGH;
+    }
+}
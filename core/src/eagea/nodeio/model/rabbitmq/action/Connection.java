@@ -14,6 +14,8 @@ public class Connection extends Action
 
     private MapM mMap;
     private PlayersM mPlayers;
+    // Secret of the player session (see Resume), only in the request.
+    private String mToken;
 
     /**
      * Constructor to send host, to request her/him the map and players.
@@ -42,4 +44,20 @@ public class Connection extends Action
     {
         return mPlayers;
     }
-}
\ No newline at end of file
+
+    public void setToken(String token)
+    {
+        mToken = token;
+    }
+
+    public String getToken()
+    {
+        return mToken;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY_HIGH;
+    }
+}
@@ -35,4 +35,10 @@ public class Disconnection extends Action
     public String getNewOwner() { return mNewOwner; }
 
     public ArrayList<Integer> getIndexes() { return mIndexes; }
-}
\ No newline at end of file
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY_HIGH;
+    }
+}
@@ -0,0 +1,58 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * Sent periodically by the host and the standbys to all the others, so that
+ * they can detect the failure of the host (see FailureDetector), and by the
+ * other players to the host only (rather than each one to each other).
+ */
+public class Heartbeat extends Action
+{
+    private static final long serialVersionUID = -4163092480270625593L;
+
+    private final boolean mIsHost;
+    private final boolean mIsStandby;
+    // When it was sent, on the sender clock.
+    private final long mTime;
+    // Host only: requests waiting, and time to check one (ns).
+    private int mBacklog;
+    private long mLatency;
+
+    public Heartbeat(String ID, boolean isHost, boolean isStandby, long time)
+    {
+        super(ID);
+        mIsHost = isHost;
+        mIsStandby = isStandby;
+        mTime = time;
+    }
+
+    public boolean isHost()
+    {
+        return mIsHost;
+    }
+
+    public boolean isStandby()
+    {
+        return mIsStandby;
+    }
+
+    public long getTime()
+    {
+        return mTime;
+    }
+
+    public void setLoad(int backlog, long latency)
+    {
+        mBacklog = backlog;
+        mLatency = latency;
+    }
+
+    public int getBacklog()
+    {
+        return mBacklog;
+    }
+
+    public long getLatency()
+    {
+        return mLatency;
+    }
+}
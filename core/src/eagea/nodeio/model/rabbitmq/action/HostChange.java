@@ -15,4 +15,10 @@ public class HostChange extends Action
     {
         super(newHost);
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY_HIGH;
+    }
+}
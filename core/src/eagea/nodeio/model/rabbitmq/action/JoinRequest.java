@@ -0,0 +1,23 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * A player asks the matchmaker for a room to play in.
+ */
+public class JoinRequest extends Action
+{
+    private static final long serialVersionUID = 5127930489246017561L;
+
+    // Latency bucket of the player (see Matchmaker).
+    private final int mBucket;
+
+    public JoinRequest(String ID, int bucket)
+    {
+        super(ID);
+        mBucket = bucket;
+    }
+
+    public int getBucket()
+    {
+        return mBucket;
+    }
+}
@@ -11,6 +11,11 @@ public class Move extends Action
     private static final long serialVersionUID = -2331051169444334502L;
 
     private final PlayerM.Event mOrientation;
+    // Player position after the move: predicted by the player, then the
+    // actual one set by the host.
+    private int mI;
+    private int mJ;
+    private int mZone;
 
     public Move(String ID, PlayerM.Event orientation)
     {
@@ -22,4 +27,31 @@ public class Move extends Action
     {
         return mOrientation;
     }
+
+    public void setPosition(PlayerM player)
+    {
+        mI = player.getI();
+        mJ = player.getJ();
+        mZone = player.getZone();
+    }
+
+    public boolean isAt(int i, int j, int zone)
+    {
+        return mI == i && mJ == j && mZone == zone;
+    }
+
+    public int getI()
+    {
+        return mI;
+    }
+
+    public int getJ()
+    {
+        return mJ;
+    }
+
+    public int getZone()
+    {
+        return mZone;
+    }
 }
@@ -0,0 +1,29 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * The matchmaker asks a host process to host a new room.
+ */
+public class OpenRoom extends Action
+{
+    private static final long serialVersionUID = -4460518237716980532L;
+
+    private final String mRoom;
+    private final int mBucket;
+
+    public OpenRoom(String hostID, String room, int bucket)
+    {
+        super(hostID);
+        mRoom = room;
+        mBucket = bucket;
+    }
+
+    public String getRoom()
+    {
+        return mRoom;
+    }
+
+    public int getBucket()
+    {
+        return mBucket;
+    }
+}
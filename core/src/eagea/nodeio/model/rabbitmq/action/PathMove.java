@@ -0,0 +1,32 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * Player wants to walk to a cell (of the whole map, see
+ * PlayerM.getMapPosition). Send this action to the host, which finds the way
+ * and sends the moves one by one, at its pace, until she/he is there or
+ * asks for another move.
+ */
+public class PathMove extends Action
+{
+    private static final long serialVersionUID = 5209483162775034186L;
+
+    private final int mX;
+    private final int mY;
+
+    public PathMove(String ID, int x, int y)
+    {
+        super(ID);
+        mX = x;
+        mY = y;
+    }
+
+    public int getX()
+    {
+        return mX;
+    }
+
+    public int getY()
+    {
+        return mY;
+    }
+}
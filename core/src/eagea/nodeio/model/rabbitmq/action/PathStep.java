@@ -0,0 +1,17 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * Host only.
+ * Checked by the host itself to move each walking player by one cell (see
+ * Node.onPathTick), so that the steps are captured and replayed in order
+ * with the other actions.
+ */
+public class PathStep extends Action
+{
+    private static final long serialVersionUID = -7760184926813425341L;
+
+    public PathStep(String ID)
+    {
+        super(ID);
+    }
+}
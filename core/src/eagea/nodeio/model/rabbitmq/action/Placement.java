@@ -0,0 +1,23 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * The matchmaker answer to a JoinRequest: the room to join.
+ */
+public class Placement extends Action
+{
+    private static final long serialVersionUID = -8803120593772160214L;
+
+    // Null if no host is available.
+    private final String mRoom;
+
+    public Placement(String ID, String room)
+    {
+        super(ID);
+        mRoom = room;
+    }
+
+    public String getRoom()
+    {
+        return mRoom;
+    }
+}
@@ -0,0 +1,88 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import eagea.nodeio.model.logic.map.ZoneM;
+import eagea.nodeio.model.logic.player.PlayerM;
+
+/**
+ * A player found that some zones differ from the host ones (see StateDigest):
+ * ask for these zones and the players on them only.
+ */
+public class Repair extends Action
+{
+    private static final long serialVersionUID = -2954018846311946220L;
+
+    /**
+     * Player position (the players themselves refer to the whole map).
+     */
+    public static class PlayerState implements Serializable
+    {
+        private static final long serialVersionUID = 3318560264519430261L;
+
+        private final String mID;
+        private final int mI;
+        private final int mJ;
+        private final int mZone;
+        private final PlayerM.Color mColor;
+
+        public PlayerState(PlayerM player)
+        {
+            mID = player.getID();
+            mI = player.getI();
+            mJ = player.getJ();
+            mZone = player.getZone();
+            mColor = player.getColor();
+        }
+
+        public String getID() { return mID; }
+        public int getI() { return mI; }
+        public int getJ() { return mJ; }
+        public int getZone() { return mZone; }
+        public PlayerM.Color getColor() { return mColor; }
+    }
+
+    // Zones indexes [from, to[.
+    private final ArrayList<int[]> mRanges;
+    // Host state in these ranges.
+    private ArrayList<ZoneM> mZones;
+    private ArrayList<PlayerState> mPlayers;
+
+    /**
+     * Sent by the player to the host.
+     */
+    public Repair(String ID, ArrayList<int[]> ranges)
+    {
+        super(ID);
+        mRanges = ranges;
+    }
+
+    /**
+     * Sent by the host in response (to everyone, only the player uses it).
+     * @param zones the ones in the ranges, in order.
+     */
+    public Repair(String ID, ArrayList<int[]> ranges,
+                  ArrayList<ZoneM> zones, ArrayList<PlayerState> players)
+    {
+        super(ID);
+        mRanges = ranges;
+        mZones = zones;
+        mPlayers = players;
+    }
+
+    public ArrayList<int[]> getRanges()
+    {
+        return mRanges;
+    }
+
+    public ArrayList<ZoneM> getZones()
+    {
+        return mZones;
+    }
+
+    public ArrayList<PlayerState> getPlayers()
+    {
+        return mPlayers;
+    }
+}
@@ -0,0 +1,71 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+import java.util.ArrayList;
+
+/**
+ * Player comes back from a Suspend. Send this action to the host with the
+ * session token given at connection and the last action received, so that
+ * it sends back only the actions missed since.
+ */
+public class Resume extends Action
+{
+    private static final long serialVersionUID = 6638146309712935418L;
+
+    private final String mToken;
+    // Last action received: the host which broadcast it, and its rank (not
+    // the rank of this action, see Action.getBroadcast).
+    private final String mHost;
+    private final long mLastReceived;
+    // Null if the host does not have them anymore (then ask for a Sync).
+    private final ArrayList<Action> mMissed;
+
+    /**
+     * Sent by the player to request.
+     */
+    public Resume(String ID, String token, String host, long lastReceived)
+    {
+        super(ID);
+        mToken = token;
+        mHost = host;
+        mLastReceived = lastReceived;
+        mMissed = null;
+    }
+
+    /**
+     * Sent by the host in response.
+     */
+    public Resume(String ID, ArrayList<Action> missed)
+    {
+        super(ID);
+        mToken = null;
+        mHost = null;
+        mLastReceived = 0;
+        mMissed = missed;
+    }
+
+    public String getToken()
+    {
+        return mToken;
+    }
+
+    public String getHost()
+    {
+        return mHost;
+    }
+
+    public long getLastReceived()
+    {
+        return mLastReceived;
+    }
+
+    public ArrayList<Action> getMissed()
+    {
+        return mMissed;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY_HIGH;
+    }
+}
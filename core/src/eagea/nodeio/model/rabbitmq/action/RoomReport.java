@@ -0,0 +1,38 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * A host process tells the matchmaker the occupancy of one of its rooms
+ * (or that it is alive, without any room).
+ */
+public class RoomReport extends Action
+{
+    private static final long serialVersionUID = 2931751248816603946L;
+
+    // Null if the host has no room.
+    private final String mRoom;
+    private final int mBucket;
+    private final int mPlayers;
+
+    public RoomReport(String hostID, String room, int bucket, int players)
+    {
+        super(hostID);
+        mRoom = room;
+        mBucket = bucket;
+        mPlayers = players;
+    }
+
+    public String getRoom()
+    {
+        return mRoom;
+    }
+
+    public int getBucket()
+    {
+        return mBucket;
+    }
+
+    public int getPlayers()
+    {
+        return mPlayers;
+    }
+}
@@ -0,0 +1,42 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * The first levels of the host state tree (see MerkleTree), for the players
+ * to check that they have the same state.
+ */
+public class StateDigest extends Action
+{
+    private static final long serialVersionUID = 6034816902771254853L;
+
+    private int mWidth;
+    private long[] mTop;
+
+    /**
+     * Sent by the host to itself, so that the digest is made in order with
+     * the other actions.
+     */
+    public StateDigest(String ID)
+    {
+        super(ID);
+    }
+
+    /**
+     * Sent by the host to the players.
+     */
+    public StateDigest(String ID, int width, long[] top)
+    {
+        super(ID);
+        mWidth = width;
+        mTop = top;
+    }
+
+    public int getWidth()
+    {
+        return mWidth;
+    }
+
+    public long[] getTop()
+    {
+        return mTop;
+    }
+}
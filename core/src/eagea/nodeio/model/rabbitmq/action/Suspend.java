@@ -0,0 +1,22 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+/**
+ * Player is paused (e.g. app in background). The host keeps her/his player
+ * and zones for a grace period, during which she/he can come back with a
+ * Resume instead of a whole new connection.
+ */
+public class Suspend extends Action
+{
+    private static final long serialVersionUID = -2164370551904378721L;
+
+    public Suspend(String ID)
+    {
+        super(ID);
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY_HIGH;
+    }
+}
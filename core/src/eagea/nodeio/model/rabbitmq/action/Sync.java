@@ -0,0 +1,55 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+import java.util.HashMap;
+
+import eagea.nodeio.model.logic.map.MapM;
+import eagea.nodeio.model.logic.player.PlayersM;
+
+/**
+ * A node which is not playing (e.g. a standby host) asks the host for the
+ * current game state. The host sends it back to everyone, but only the
+ * requester uses it.
+ */
+public class Sync extends Action
+{
+    private static final long serialVersionUID = -1538412275862519834L;
+
+    private MapM mMap;
+    private PlayersM mPlayers;
+    // Last request validated per player and lane.
+    private HashMap<String, Long> mSequences;
+
+    /**
+     * Sent by the node to the host.
+     */
+    public Sync(String ID)
+    {
+        super(ID);
+    }
+
+    /**
+     * Sent by the host in response.
+     */
+    public Sync(String ID, MapM map, PlayersM players, HashMap<String, Long> sequences)
+    {
+        super(ID);
+        mMap = map;
+        mPlayers = players;
+        mSequences = sequences;
+    }
+
+    public MapM getMap()
+    {
+        return mMap;
+    }
+
+    public PlayersM getPlayers()
+    {
+        return mPlayers;
+    }
+
+    public HashMap<String, Long> getSequences()
+    {
+        return mSequences;
+    }
+}
@@ -0,0 +1,58 @@
+package eagea.nodeio.model.rabbitmq.action;
+
+import java.util.ArrayList;
+
+/**
+ * Lockstep only (see Model.LOCKSTEP).
+ * The inputs (moves, speaks and catches) received by the host during a tick,
+ * unchecked, in the order every node plays them. Every few ticks, the host
+ * tells the hash of its state once they are played, for the players to check
+ * that they did the same.
+ */
+public class Tick extends Action
+{
+    private static final long serialVersionUID = -2417095083615512937L;
+
+    private long mTick;
+    private ArrayList<Action> mInputs;
+    // 0 if not checked at this tick.
+    private long mHash;
+
+    /**
+     * Checked by the host itself to close the tick (see Node.onLockstepTick).
+     */
+    public Tick(String ID)
+    {
+        super(ID);
+    }
+
+    /**
+     * Sent by the host to the players.
+     */
+    public Tick(String ID, long tick, ArrayList<Action> inputs)
+    {
+        super(ID);
+        mTick = tick;
+        mInputs = inputs;
+    }
+
+    public long getTick()
+    {
+        return mTick;
+    }
+
+    public ArrayList<Action> getInputs()
+    {
+        return mInputs;
+    }
+
+    public void setHash(long hash)
+    {
+        mHash = hash;
+    }
+
+    public long getHash()
+    {
+        return mHash;
+    }
+}
@@ -76,6 +76,10 @@ public class View
                 mLogo.render(delta);
                 mStartButton.render(delta);
                 break;
+            case STARTING:
+                // Joining (see Model.getStage).
+                mLogo.render(delta);
+                break;
             case CAUGHT:
             case GAME:
                 // Render game screen.
@@ -88,6 +92,7 @@ public class View
                 mJoystick.render(delta);
                 mCatchButton.render(delta);
                 mCaughtBox.render(delta);
+                mModel.onFrame();
                 break;
         }
     }
@@ -149,7 +154,44 @@ public class View
         return new Vector2(getCoordinateX(i, j), getCoordinateY(i, j));
     }
 
-    private static float getCoordinateX(int i, int j)
+    /**
+     * Same, for an item which can be between two cells.
+     * @param itemPosition the position of the item in the full map grid
+     * (see PlayerM.getMapPosition).
+     */
+    public static Vector2 getCoordinates(Vector3 playerPosition, Vector2 itemPosition)
+    {
+        // Map the player position in the full map grid.
+        int playerIinMap = (((int) playerPosition.z / MapM.ZONE_LINE) * ZoneM.SIZE
+                + (int) playerPosition.x);
+        int playerJinMap = (((int) playerPosition.z % MapM.ZONE_LINE) * ZoneM.SIZE
+                + (int) playerPosition.y);
+        // Get difference between them (player is always in 0, 0).
+        float i = itemPosition.x - playerIinMap;
+        float j = itemPosition.y - playerJinMap;
+
+        return new Vector2(getCoordinateX(i, j), getCoordinateY(i, j));
+    }
+
+    /**
+     * Inverse of getCoordinates: the cell of the full map grid shown at a
+     * point of the world (e.g. touched).
+     * @param playerPosition the position of the player in the full map grid
+     * (see PlayerM.getMapPosition).
+     */
+    public static Vector2 getCell(Vector2 playerPosition, Vector2 world)
+    {
+        // The tile top center is half a tile right and 3/4 up of its corner
+        // (which is centered, see getCoordinateX and getCoordinateY).
+        float d = world.x / (CellV.TILE_SIZE / 2f + CellV.TILE_SIZE / 10f);
+        float s = (world.y - CellV.TILE_SIZE / 4f)
+                / (CellV.TILE_SIZE / 2f + CellV.TILE_SIZE / 10f - CellV.TILE_SIZE / 3.75f);
+        // d = i - j, s = i + j (relative to the player).
+        return new Vector2(playerPosition.x + Math.round((s + d) / 2f),
+                playerPosition.y + Math.round((s - d) / 2f));
+    }
+
+    private static float getCoordinateX(float i, float j)
     {
         // Space between tiles for grid.
         float space = (i - j) * CellV.TILE_SIZE / 10f;
@@ -159,7 +201,7 @@ public class View
         return (i - j) * (CellV.TILE_SIZE / 2f) + space + center;
     }
 
-    private static float getCoordinateY(int i, int j)
+    private static float getCoordinateY(float i, float j)
     {
         // Space between tiles for grid.
         float space = (i + j) * CellV.TILE_SIZE / 10f;
@@ -5,6 +5,7 @@ import com.badlogic.gdx.math.Vector2;
 
 import eagea.nodeio.Screen;
 import eagea.nodeio.Main;
+import eagea.nodeio.log.Log;
 import eagea.nodeio.model.Model;
 import eagea.nodeio.view.View;
 
@@ -82,7 +83,7 @@ public class CaughtBox
         if (mView.getModel().getState() == Model.State.CAUGHT)
         {
             // Whole screen touchable in this state.
-            System.out.println("[DEBUG]: on click caught");
+            Log.debug(Log.Category.VIEW, "on click caught");
             Screen.playButtonSound();
             Screen.stopGameMusic();
             Screen.startMenuMusic();
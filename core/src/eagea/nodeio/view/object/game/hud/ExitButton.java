@@ -6,6 +6,7 @@ import com.badlogic.gdx.math.Vector2;
 
 import eagea.nodeio.Screen;
 import eagea.nodeio.Main;
+import eagea.nodeio.log.Log;
 import eagea.nodeio.view.View;
 
 /**
@@ -53,7 +54,7 @@ public class ExitButton
         if (mPosition.x <= position.x && position.x <= mPosition.x + ICON_WIDTH
                 && mPosition.y <= position.y && position.y <= mPosition.y + ICON_HEIGHT)
         {
-            System.out.println("[DEBUG]: on click exit");
+            Log.debug(Log.Category.VIEW, "on click exit");
             Screen.playButtonSound();
             Screen.stopGameMusic();
             Screen.startMenuMusic();
@@ -6,6 +6,7 @@ import com.badlogic.gdx.math.Vector2;
 
 import eagea.nodeio.Screen;
 import eagea.nodeio.Main;
+import eagea.nodeio.log.Log;
 import eagea.nodeio.model.logic.player.PlayerM;
 import eagea.nodeio.view.View;
 
@@ -100,7 +101,7 @@ public class Joystick
                 && position.x <= mPosition.x + ICON_WIDTH / 3f
                 && mPosition.y <= position.y && position.y <= mPosition.y + ICON_HEIGHT)
         {
-            System.out.println("[DEBUG]: on click joystick left");
+            Log.debug(Log.Category.VIEW, "on click joystick left");
             mView.getModel().askForMove(PlayerM.Event.LEFT);
             mIsAnimated[0] = true;
             return true;
@@ -109,7 +110,7 @@ public class Joystick
                 && position.x <= mPosition.x + ICON_WIDTH + TOUCH_DELTA
                 && mPosition.y <= position.y && position.y <= mPosition.y + ICON_HEIGHT)
         {
-            System.out.println("[DEBUG]: on click joystick right");
+            Log.debug(Log.Category.VIEW, "on click joystick right");
             mView.getModel().askForMove(PlayerM.Event.RIGHT);
             mIsAnimated[1] = true;
             return true;
@@ -118,7 +119,7 @@ public class Joystick
                 && position.y <= mPosition.y + ICON_HEIGHT + TOUCH_DELTA
                 && mPosition.x <= position.x && position.x <= mPosition.x + ICON_WIDTH)
         {
-            System.out.println("[DEBUG]: on click joystick up");
+            Log.debug(Log.Category.VIEW, "on click joystick up");
             mView.getModel().askForMove(PlayerM.Event.UP);
             mIsAnimated[2] = true;
             return true;
@@ -127,7 +128,7 @@ public class Joystick
                 && position.y <= mPosition.y + ICON_HEIGHT / 3f
                 && mPosition.x <= position.x && position.x <= mPosition.x + ICON_WIDTH)
         {
-            System.out.println("[DEBUG]: on click joystick down");
+            Log.debug(Log.Category.VIEW, "on click joystick down");
             mView.getModel().askForMove(PlayerM.Event.DOWN);
             mIsAnimated[3] = true;
             return true;
@@ -6,6 +6,7 @@ import com.badlogic.gdx.math.Vector2;
 
 import eagea.nodeio.Screen;
 import eagea.nodeio.Main;
+import eagea.nodeio.log.Log;
 import eagea.nodeio.model.logic.player.PlayerM;
 import eagea.nodeio.view.View;
 
@@ -129,7 +130,7 @@ public class SpeakButtons
                 && mPosition.y - TOUCH_DELTA <= position.y
                 && position.y <= mPosition.y + TOUCH_DELTA + ICON_HEIGHT)
         {
-            System.out.println("[DEBUG]: on click speak hello");
+            Log.debug(Log.Category.VIEW, "on click speak hello");
             mView.getModel().askForSpeak(PlayerM.Speak.HELLO);
             mHelloAnimated = true;
             return true;
@@ -139,7 +140,7 @@ public class SpeakButtons
                 && mPosition.y - TOUCH_DELTA <= position.y
                 && position.y <= mPosition.y + TOUCH_DELTA + ICON_HEIGHT)
         {
-            System.out.println("[DEBUG]: on click speak looser");
+            Log.debug(Log.Category.VIEW, "on click speak looser");
             mView.getModel().askForSpeak(PlayerM.Speak.LOOSER);
             mLooserAnimated = true;
             return true;
@@ -149,7 +150,7 @@ public class SpeakButtons
                 && mPosition.y - TOUCH_DELTA <= position.y
                 && position.y <= mPosition.y + TOUCH_DELTA+ ICON_HEIGHT)
         {
-            System.out.println("[DEBUG]: on click speak bye");
+            Log.debug(Log.Category.VIEW, "on click speak bye");
             mView.getModel().askForSpeak(PlayerM.Speak.BYE);
             mByeAnimated = true;
             return true;
@@ -9,6 +9,8 @@ import java.util.Observer;
 
 import eagea.nodeio.Screen;
 import eagea.nodeio.Main;
+import eagea.nodeio.metrics.Histogram;
+import eagea.nodeio.metrics.Metrics;
 import eagea.nodeio.model.logic.player.PlayerM;
 import eagea.nodeio.view.View;
 
@@ -29,6 +31,18 @@ public class PlayerV implements Observer
     private final float TIME_PER_FRAME = 0.04f;
     // Speak seconds per frame.
     private final float TIME_SPEAK = 1f;
+    // Other players positions received, to render them with a delay so that
+    // they move smoothly even if their moves arrive irregularly.
+    private static final int SAMPLES = 16;
+    // Rendering delay bounds, and time to go from a cell to another (ns).
+    private static final long MIN_DELAY = 50_000_000L;
+    private static final long MAX_DELAY = 300_000_000L;
+    private static final long MOVE_TIME = 160_000_000L;
+    // Longer intervals between moves are pauses, not jitter (ns).
+    private static final long IDLE = 500_000_000L;
+
+    // Metrics.
+    private static final Histogram DELAY = Metrics.histogram("view.interpolation.delay.ns");
 
     // Model.
     private final PlayerM mRealPlayer; // Player who is playing
@@ -47,6 +61,20 @@ public class PlayerV implements Observer
     private boolean mIsSpeaking;
     // Current orientation.
     private PlayerM.Event mOrientation;
+    // Received positions (in the full map grid), their arrival time and
+    // their move (ring buffers).
+    private final Vector2[] mSamples;
+    private final long[] mSampleTimes;
+    private final PlayerM.Event[] mSampleEvents;
+    // Number of samples received, and the first one not reached yet.
+    private long mNbSamples;
+    private long mNext;
+    // The last sample whose move animation was started.
+    private long mAnimated;
+    // Inter-arrival jitter (as in RFC 3550) and rendering delay (ns).
+    private long mLastInterval;
+    private double mJitter;
+    private long mDelay;
 
     public PlayerV(PlayerM realPlayer, PlayerM player, String color)
     {
@@ -62,18 +90,128 @@ public class PlayerV implements Observer
         // Speak animation.
         mDeltaSpeak = 0f;
         mIsSpeaking = false;
+        // Interpolation.
+        mSamples = new Vector2[SAMPLES];
+        mSampleTimes = new long[SAMPLES];
+        mSampleEvents = new PlayerM.Event[SAMPLES];
+        mDelay = MIN_DELAY;
     }
 
     public void render(float delta)
     {
-        Vector2 coord = View.getCoordinates(
-                new Vector3(mRealPlayer.getI(), mRealPlayer.getJ(), mRealPlayer.getZone()),
-                new Vector3(mPlayer.getI(), mPlayer.getJ(), mPlayer.getZone()));
+        Vector3 realPosition = new Vector3(mRealPlayer.getI(), mRealPlayer.getJ(),
+                mRealPlayer.getZone());
+        Vector2 coord;
+
+        if (mPlayer == mRealPlayer)
+        {
+            // Our moves are shown as soon as they are made.
+            coord = View.getCoordinates(realPosition,
+                    new Vector3(mPlayer.getI(), mPlayer.getJ(), mPlayer.getZone()));
+        }
+        else
+        {
+            coord = View.getCoordinates(realPosition, interpolate(System.nanoTime()));
+        }
 
         renderCharacter(delta, coord);
         renderSpeak(delta, coord);
     }
 
+    private synchronized void addSample(long time, Vector2 position, PlayerM.Event event)
+    {
+        if (mNbSamples > 0 && position.equals(mSamples[(int) ((mNbSamples - 1) % SAMPLES)]))
+        {
+            // Already seen by interpolate; only missing the move.
+            if (event != null)
+            {
+                mSampleEvents[(int) ((mNbSamples - 1) % SAMPLES)] = event;
+            }
+
+            return;
+        }
+
+        if (mNbSamples > 0)
+        {
+            long interval = time - mSampleTimes[(int) ((mNbSamples - 1) % SAMPLES)];
+            // Adapt the delay to the interval variations.
+            if (mLastInterval > 0 && mLastInterval < IDLE && interval < IDLE)
+            {
+                mJitter += (Math.abs(interval - mLastInterval) - mJitter) / 16;
+                mDelay = Math.min(MAX_DELAY, MIN_DELAY + (long) (4 * mJitter));
+                DELAY.record(mDelay);
+            }
+
+            mLastInterval = interval;
+        }
+
+        int k = (int) (mNbSamples % SAMPLES);
+        mSamples[k] = position;
+        mSampleTimes[k] = time;
+        mSampleEvents[k] = event;
+        mNbSamples ++;
+    }
+
+    /**
+     * @return the position to render the player at (in the full map grid):
+     * where she/he was a delay ago, between two received positions.
+     */
+    private synchronized Vector2 interpolate(long now)
+    {
+        Vector2 current = mPlayer.getMapPosition();
+
+        if (mNbSamples == 0 || ! current.equals(mSamples[(int) ((mNbSamples - 1) % SAMPLES)]))
+        {
+            // Placed without moving (e.g. repaired).
+            addSample(now, current, null);
+        }
+
+        long time = now - mDelay;
+        // Keep the previous sample in the buffer.
+        mNext = Math.max(mNext, mNbSamples - SAMPLES + 1);
+
+        while (mNext < mNbSamples && mSampleTimes[(int) (mNext % SAMPLES)] <= time)
+        {
+            mNext ++;
+        }
+
+        if (mNext == 0)
+        {
+            return mSamples[0];
+        }
+
+        int previous = (int) ((mNext - 1) % SAMPLES);
+
+        if (mNext == mNbSamples)
+        {
+            return mSamples[previous];
+        }
+
+        int next = (int) (mNext % SAMPLES);
+        // The move takes place just before the next position arrived.
+        long start = Math.max(mSampleTimes[previous], mSampleTimes[next] - MOVE_TIME);
+
+        if (time < start || mSamples[previous].dst(mSamples[next]) > 1.5f)
+        {
+            // Not started, or a jump (no path to show).
+            return mSamples[previous];
+        }
+
+        if (mAnimated < mNext + 1 && mSampleEvents[next] != null)
+        {
+            // Player starts moving; start the move animation.
+            mOrientation = mSampleEvents[next];
+            mFrame = 1;
+            mIsAnimated = true;
+        }
+
+        mAnimated = mNext + 1;
+
+        float alpha = (float) (time - start) / (mSampleTimes[next] - start);
+
+        return new Vector2(mSamples[previous]).lerp(mSamples[next], alpha);
+    }
+
     private void renderCharacter(float delta, Vector2 coord)
     {
         TextureRegion toDraw = null;
@@ -143,6 +281,11 @@ public class PlayerV implements Observer
                 mDeltaSpeak = 0f;
                 mIsSpeaking = true;
             }
+            else if (mPlayer != mRealPlayer)
+            {
+                // Player has moved; render it later (see interpolate).
+                addSample(System.nanoTime(), mPlayer.getMapPosition(), (PlayerM.Event) o);
+            }
             else
             {
                 // Player has moved; start the move animation.
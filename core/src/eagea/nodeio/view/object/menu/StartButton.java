@@ -6,6 +6,7 @@ import com.badlogic.gdx.math.Vector2;
 
 import eagea.nodeio.Screen;
 import eagea.nodeio.Main;
+import eagea.nodeio.log.Log;
 import eagea.nodeio.model.Model;
 import eagea.nodeio.view.View;
 
@@ -76,12 +77,12 @@ public class StartButton
         if (mView.getModel().getState() == Model.State.MENU)
         {
             // Whole screen touchable in this state.
-            System.out.println("[DEBUG]: on click start");
+            Log.debug(Log.Category.VIEW, "on click start");
             Screen.playButtonSound();
             Screen.stopMenuMusic();
             Screen.startGameMusic();
             // Start the game
-            mView.getModel().goToGame();
+            mView.getModel().joinMatch();
             return true;
         }
 
@@ -9,6 +9,7 @@ public class DesktopLauncher {
 	public static void main (String[] arg) {
 		Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
 		config.setWindowIcon("misc/ic_launcher.png");
+		MetricsJmx.register();
 		new Lwjgl3Application(new Main(), config);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,352 @@
+package eagea.nodeio.desktop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.rabbitmq.Failover;
+import eagea.nodeio.model.rabbitmq.FailureDetector;
+import eagea.nodeio.model.rabbitmq.action.Connection;
+import eagea.nodeio.model.rabbitmq.action.Heartbeat;
+
+/**
+ * Kill the host of a simulated room, with lost and late heartbeats, and
+ * check the failover: "FailoverChaos [rounds]".
+ * Each node runs the failover of Node (Failover, with the FailureDetector
+ * and Model.elect); only the broker and the clock are simulated: the host
+ * queue consumer (dropped some time after its host dies) and the claim
+ * queue (one claim held for the lease).
+ * Exit with an error if there were two live hosts at once, or no host at
+ * the end of a round.
+ */
+public class FailoverChaos
+{
+    // Same defaults as Node (ms).
+    private static final long PERIOD = 500;
+    private static final long TIMEOUT = 2000;
+    private static final long LEASE = 3000;
+    private static final long RETRY = 50;
+    private static final long GRACE = 1000;
+    // Simulation step, and one broker round trip (ms).
+    private static final long STEP = 10;
+    private static final long ROUND_TRIP = 10;
+    private static final long DURATION = 30000;
+
+    // Simulated clock (ms), broker, and scheduled tasks by time.
+    private static long mNow;
+    private static String mConsumer;
+    private static long mConsumerDropAt;
+    private static long mClaimExpiresAt;
+    private static TreeMap<Long, List<Runnable>> mTasks;
+
+    /**
+     * A node of the room, and what its failover sees of the broker.
+     */
+    private static class SimNode implements Failover.Context
+    {
+        private final String mID;
+        private final boolean mIsStandby;
+        private final long mPhase;
+        private final Model mModel;
+        private final FailureDetector mDetector;
+        private final Failover mFailover;
+        private boolean mIsHost;
+        private boolean mIsDead;
+
+        private SimNode(String ID, boolean isStandby, long phase, Model model)
+        {
+            mID = ID;
+            mIsStandby = isStandby;
+            mPhase = phase;
+            mModel = model;
+            mDetector = new FailureDetector(TimeUnit.MILLISECONDS.toNanos(TIMEOUT));
+            mFailover = new Failover(mDetector, this, LEASE, RETRY, GRACE, PERIOD);
+        }
+
+        @Override
+        public String getID()
+        {
+            return mID;
+        }
+
+        @Override
+        public boolean isHost()
+        {
+            return mIsHost;
+        }
+
+        @Override
+        public boolean isPlaying()
+        {
+            return ! mIsDead;
+        }
+
+        @Override
+        public String elect(String host, Set<String> standbys)
+        {
+            return mModel.elect(host, standbys);
+        }
+
+        @Override
+        public boolean hasHost()
+        {
+            return mConsumer != null;
+        }
+
+        @Override
+        public boolean claimHost()
+        {
+            if (mNow < mClaimExpiresAt)
+            {
+                // Nacked: a claim is held.
+                return false;
+            }
+            // Confirmed a round trip later.
+            mClaimExpiresAt = mNow + ROUND_TRIP + LEASE;
+            return true;
+        }
+
+        @Override
+        public boolean takeOver(String host)
+        {
+            // Consume the host queue.
+            mConsumer = mID;
+            mIsHost = true;
+            return true;
+        }
+
+        @Override
+        public void schedule(Runnable task, long delay)
+        {
+            long at = mNow + delay;
+            mTasks.computeIfAbsent(at - at % STEP, t -> new ArrayList<>()).add(() ->
+                    {
+                        if (! mIsDead)
+                        {
+                            task.run();
+                        }
+                    }
+            );
+        }
+
+        @Override
+        public long now()
+        {
+            return TimeUnit.MILLISECONDS.toNanos(mNow);
+        }
+    }
+
+    /**
+     * A heartbeat on its way.
+     */
+    private static class Delivery
+    {
+        private final SimNode mTo;
+        private final Heartbeat mHeartbeat;
+
+        private Delivery(SimNode to, Heartbeat heartbeat)
+        {
+            mTo = to;
+            mHeartbeat = heartbeat;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Random random = new Random(42);
+        int failures = 0;
+        long takeovers = 0;
+        long worst = 0;
+        int counted = 0;
+
+        for (int round = 0; round < rounds; round ++)
+        {
+            long takeover = run(random);
+
+            if (takeover < 0)
+            {
+                failures ++;
+            }
+            else
+            {
+                takeovers += takeover;
+                worst = Math.max(worst, takeover);
+                counted ++;
+            }
+        }
+
+        System.out.println(String.format("%d rounds, %d failed, takeover mean %d ms, max %d ms",
+                rounds, failures, counted == 0 ? 0 : takeovers / counted, worst));
+        System.out.println(failures == 0 ? "OK" : failures + " round(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return the time from the host death to the new host (ms), or -1 if
+     * the round failed.
+     */
+    private static long run(Random random)
+    {
+        double loss = random.nextDouble() * 0.3;
+        long jitter = random.nextInt(200);
+        int standbys = random.nextInt(3);
+        int players = 2 + random.nextInt(8);
+        // The broker notices a dead connection at once (killed process) or
+        // later (hung host).
+        long linger = random.nextBoolean() ? 0 : random.nextInt((int) LEASE);
+        boolean killStandby = standbys > 0 && random.nextInt(3) == 0;
+        long killAt = 5000 + random.nextInt((int) PERIOD);
+
+        Model model = new Model(null);
+        model.goToReplay("host", null, null);
+        List<SimNode> nodes = new ArrayList<>();
+        nodes.add(new SimNode("host", false, phase(random), model));
+
+        for (int i = 0; i < standbys; i ++)
+        {
+            nodes.add(new SimNode("standby-" + i, true, phase(random), model));
+        }
+
+        for (int i = 0; i < players; i ++)
+        {
+            model.check(new Connection("player-" + i));
+            nodes.add(new SimNode("player-" + i, false, phase(random), model));
+        }
+
+        SimNode host = nodes.get(0);
+        host.mIsHost = true;
+        mConsumer = host.mID;
+        mConsumerDropAt = Long.MAX_VALUE;
+        mClaimExpiresAt = LEASE;
+        mTasks = new TreeMap<>();
+        Map<Long, List<Delivery>> wire = new HashMap<>();
+        long newHostAt = -1;
+
+        for (mNow = 0; mNow < DURATION; mNow += STEP)
+        {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(mNow);
+
+            if (mNow == killAt - killAt % STEP)
+            {
+                host.mIsDead = true;
+                mConsumerDropAt = mNow + linger;
+
+                if (killStandby)
+                {
+                    nodes.get(1).mIsDead = true;
+                }
+            }
+
+            if (mConsumer != null && mNow >= mConsumerDropAt && isDead(nodes, mConsumer))
+            {
+                mConsumer = null;
+            }
+            // Heartbeats received.
+            List<Delivery> arrived = wire.remove(mNow);
+
+            if (arrived != null)
+            {
+                for (Delivery delivery : arrived)
+                {
+                    if (! delivery.mTo.mIsDead)
+                    {
+                        delivery.mTo.mDetector.onHeartbeat(delivery.mHeartbeat, nanos);
+                    }
+                }
+            }
+            // Takeovers scheduled by the failovers.
+            while (! mTasks.isEmpty() && mTasks.firstKey() <= mNow)
+            {
+                mTasks.pollFirstEntry().getValue().forEach(Runnable::run);
+            }
+            // Heartbeat ticks (see Node.onHeartbeatTick).
+            for (SimNode node : nodes)
+            {
+                if (! node.mIsDead && (mNow + node.mPhase) % PERIOD == 0)
+                {
+                    sendHeartbeat(node, nodes, wire, random, loss, jitter, nanos);
+                    node.mFailover.check(nanos);
+                }
+            }
+
+            int hosts = 0;
+
+            for (SimNode node : nodes)
+            {
+                if (node.mIsHost && ! node.mIsDead)
+                {
+                    hosts ++;
+                    newHostAt = newHostAt < 0 && node != host ? mNow : newHostAt;
+                }
+            }
+
+            if (hosts > 1)
+            {
+                System.err.println(String.format("two hosts at %d ms (loss %.2f, linger %d ms)",
+                        mNow, loss, linger));
+                return -1;
+            }
+        }
+
+        if (newHostAt < 0)
+        {
+            System.err.println(String.format("no host (loss %.2f, linger %d ms, %d standbys)",
+                    loss, linger, standbys));
+            return -1;
+        }
+
+        return newHostAt - killAt;
+    }
+
+    private static long phase(Random random)
+    {
+        return random.nextInt((int) (PERIOD / STEP)) * STEP;
+    }
+
+    /**
+     * Send to the nodes which watch it (see Failover.isWatched), with loss
+     * and jitter.
+     */
+    private static void sendHeartbeat(SimNode node, List<SimNode> nodes,
+                                      Map<Long, List<Delivery>> wire, Random random,
+                                      double loss, long jitter, long nanos)
+    {
+        if (! Failover.isWatched(node.mIsHost, node.mIsStandby))
+        {
+            // Only to the host, which does not watch the players here.
+            return;
+        }
+
+        Heartbeat heartbeat = new Heartbeat(node.mID, node.mIsHost, node.mIsStandby, nanos);
+
+        for (SimNode other : nodes)
+        {
+            if (other != node && random.nextDouble() >= loss)
+            {
+                long at = mNow + STEP + (jitter == 0 ? 0 : random.nextInt((int) jitter));
+                wire.computeIfAbsent(at - at % STEP, t -> new ArrayList<>())
+                        .add(new Delivery(other, heartbeat));
+            }
+        }
+    }
+
+    private static boolean isDead(List<SimNode> nodes, String ID)
+    {
+        for (SimNode node : nodes)
+        {
+            if (node.mID.equals(ID))
+            {
+                return node.mIsDead;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package eagea.nodeio.desktop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.rabbitmq.Node;
+
+/**
+ * Start many nodes at once in a new room, and check that exactly one of
+ * them becomes its host (see Node.checkIfHost):
+ * "HostDiscoveryStress [nodes] [rounds]".
+ * Needs the RabbitMQ server; exit with an error if a round has no host or
+ * several ones.
+ */
+public class HostDiscoveryStress
+{
+    public static void main(String[] args) throws Exception
+    {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        int failures = 0;
+
+        for (int round = 0; round < rounds; round ++)
+        {
+            String room = "stress-" + UUID.randomUUID().toString().substring(0, 8);
+            List<Node> started = new ArrayList<>();
+            // Connected first, so that they all look for the host together.
+            for (int i = 0; i < nodes; i ++)
+            {
+                Node node = new Node(new Model(null));
+                node.setRoom(room);
+
+                if (! node.connect())
+                {
+                    System.err.println("no connection");
+                    System.exit(2);
+                }
+
+                started.add(node);
+            }
+
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> checks = new ArrayList<>();
+            long start = System.nanoTime();
+
+            for (Node node : started)
+            {
+                checks.add(executor.submit(() ->
+                        {
+                            go.await();
+                            node.checkIfHost();
+                            return null;
+                        }
+                ));
+            }
+
+            go.countDown();
+
+            for (Future<?> check : checks)
+            {
+                check.get();
+            }
+
+            long elapsed = System.nanoTime() - start;
+            int hosts = 0;
+
+            for (Node node : started)
+            {
+                hosts += node.isHost() ? 1 : 0;
+            }
+
+            System.out.println(String.format("round %d: %d nodes, %d host(s), %.1f ms",
+                    round, nodes, hosts, elapsed / 1e6));
+            failures += hosts == 1 ? 0 : 1;
+
+            for (Node node : started)
+            {
+                if (node.isHost())
+                {
+                    node.looseHost();
+                    node.closeRoom();
+                }
+
+                node.close();
+            }
+        }
+
+        executor.shutdown();
+        System.out.println(failures == 0 ? "OK" : failures + " round(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
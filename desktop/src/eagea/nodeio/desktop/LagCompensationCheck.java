@@ -0,0 +1,172 @@
+package eagea.nodeio.desktop;
+
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.logic.Dice;
+import eagea.nodeio.model.logic.map.ZoneM;
+import eagea.nodeio.model.logic.player.PlayerM;
+import eagea.nodeio.model.rabbitmq.action.Action;
+import eagea.nodeio.model.rabbitmq.action.Catch;
+import eagea.nodeio.model.rabbitmq.action.Connection;
+import eagea.nodeio.model.rabbitmq.action.Move;
+
+/**
+ * Let a runner walk around a catcher on an offline host, and send a catch
+ * request with a simulated latency (see Model.checkCatch):
+ * "LagCompensationCheck [rounds]".
+ * A catch is fair if it succeeds exactly when the runner was next to the
+ * catcher in what she/he saw (or MAX_REWIND ago if her/his view is older).
+ * Print the unfair decisions with and without rewind, and exit with an error
+ * if there is any with rewind.
+ */
+public class LagCompensationCheck
+{
+    // Same default as Model (ms).
+    private static final long MAX_REWIND = Long.getLong("nodeio.lag.rewind", 200);
+    // One way latency of the catcher, up to past MAX_REWIND (ms).
+    private static final int MAX_LATENCY = 150;
+    // Time between two moves of the runner (ms).
+    private static final int MIN_STEP = 40;
+    private static final int MAX_STEP = 160;
+    // Walk duration before the catch (ms).
+    private static final int WALK = 1500;
+
+    public static void main(String[] args)
+    {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seen = 0;
+        int unfair = 0;
+        int unfairNoRewind = 0;
+
+        for (int round = 0; round < rounds; round ++)
+        {
+            Round result = run(round, true);
+            Round noRewind = run(round, false);
+            seen += result.mExpected ? 1 : 0;
+            unfair += result.mCaught != result.mExpected ? 1 : 0;
+            unfairNoRewind += noRewind.mCaught != noRewind.mExpected ? 1 : 0;
+
+            if (result.mCaught != result.mExpected)
+            {
+                System.err.println(String.format("round %d: caught %b, expected %b (latency %d ms)",
+                        round, result.mCaught, result.mExpected, result.mLatency));
+            }
+        }
+
+        System.out.println(String.format("%d rounds, %d with the runner seen next to the catcher",
+                rounds, seen));
+        System.out.println(String.format("rewind: %d unfair, no rewind: %d unfair",
+                unfair, unfairNoRewind));
+        System.out.println(unfair == 0 ? "OK" : unfair + " unfair decision(s)");
+        System.exit(unfair == 0 ? 0 : 1);
+    }
+
+    private static class Round
+    {
+        private boolean mCaught;
+        private boolean mExpected;
+        private long mLatency;
+    }
+
+    /**
+     * A position of the runner, since the given time.
+     */
+    private static class Sample
+    {
+        private final long mTime;
+        private final Vector2 mPosition;
+
+        private Sample(long time, Vector2 position)
+        {
+            mTime = time;
+            mPosition = position;
+        }
+    }
+
+    /**
+     * Play the same round (same seed) with or without the view time.
+     */
+    private static Round run(int seed, boolean rewind)
+    {
+        Dice.setSeed(seed);
+        Random random = new Random(seed);
+        Model model = new Model(null);
+        model.goToReplay("host", null, null);
+        model.setTime(0);
+        model.check(new Connection("runner"));
+        model.check(new Connection("catcher"));
+        PlayerM runner = model.getPlayers().find("runner");
+        PlayerM catcher = model.getPlayers().find("catcher");
+        // Start the catcher two cells away, in the runner's zone.
+        int j = runner.getJ() + 2 < ZoneM.SIZE ? runner.getJ() + 2 : runner.getJ() - 2;
+        catcher.place(runner.getI(), j, runner.getZone());
+        // Walk the runner, and keep where she/he was.
+        List<Sample> trace = new ArrayList<>();
+        trace.add(new Sample(0, runner.getMapPosition()));
+
+        for (long time = next(random, 0); time < WALK; time = next(random, time))
+        {
+            PlayerM.Event orientation = PlayerM.Event.values()[
+                    random.nextInt(PlayerM.Event.values().length)];
+            model.setTime(ms(time));
+            model.check(new Move("runner", orientation));
+            trace.add(new Sample(time, runner.getMapPosition()));
+        }
+        // The catcher sees the state latency late, and her/his request takes
+        // latency to arrive.
+        Round round = new Round();
+        round.mLatency = random.nextInt(MAX_LATENCY);
+        long arrival = WALK;
+        long view = arrival - 2 * round.mLatency;
+        round.mExpected = isNext(at(trace, Math.max(view, arrival - MAX_REWIND)),
+                catcher.getMapPosition());
+        Catch action = new Catch("catcher");
+        action.setViewTime(rewind ? ms(view) : 0);
+        model.setTime(ms(arrival));
+        Action result = model.check(action);
+        round.mCaught = result instanceof Catch
+                && ((Catch) result).getCaught().contains("runner");
+        return round;
+    }
+
+    private static long next(Random random, long time)
+    {
+        return time + MIN_STEP + random.nextInt(MAX_STEP - MIN_STEP);
+    }
+
+    private static Vector2 at(List<Sample> trace, long time)
+    {
+        Vector2 position = trace.get(0).mPosition;
+
+        for (Sample sample : trace)
+        {
+            if (sample.mTime <= time)
+            {
+                position = sample.mPosition;
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Same rule as Model.findCaught.
+     */
+    private static boolean isNext(Vector2 a, Vector2 b)
+    {
+        return (a.y == b.y && Math.abs(a.x - b.x) == 1)
+                || (a.x == b.x && Math.abs(a.y - b.y) == 1);
+    }
+
+    private static long ms(long time)
+    {
+        // Away from 0, which is "unknown" for a view time.
+        return TimeUnit.MILLISECONDS.toNanos(time + 1);
+    }
+}
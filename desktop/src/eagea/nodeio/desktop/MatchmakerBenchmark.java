@@ -0,0 +1,140 @@
+package eagea.nodeio.desktop;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import eagea.nodeio.model.matchmaking.Matchmaker;
+
+/**
+ * Simulate players joining rooms through the Matchmaker, without any
+ * connection: "MatchmakerBenchmark [players] [hosts]".
+ * Some players leave while others join, and hosts report their rooms
+ * periodically, like RoomServer does. Print the placement throughput, and
+ * how the players are spread over rooms and hosts.
+ */
+public class MatchmakerBenchmark
+{
+    // Joins between two reports of the hosts.
+    private static final int REPORT_EVERY = 500;
+    // Chance that a player leaves at each join.
+    private static final double CHURN = 0.1;
+    // Share of the players per latency bucket.
+    private static final double[] BUCKETS = { 0.6, 0.3, 0.1 };
+
+    /**
+     * A room as the hosts see it.
+     */
+    private static class Room
+    {
+        private final String mHost;
+        private final int mBucket;
+        private int mPlayers;
+
+        private Room(String host, int bucket)
+        {
+            mHost = host;
+            mBucket = bucket;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int hosts = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        Random random = new Random(42);
+        Matchmaker matchmaker = new Matchmaker();
+        Map<String, Room> rooms = new HashMap<>();
+        // Room of each seated player.
+        List<String> seated = new ArrayList<>();
+
+        for (int i = 0; i < hosts; i ++)
+        {
+            matchmaker.onReport("host-" + i, null, 0, 0, System.nanoTime());
+        }
+
+        int unplaced = 0;
+        long placing = 0;
+
+        for (int i = 0; i < players; i ++)
+        {
+            if (! seated.isEmpty() && random.nextDouble() < CHURN)
+            {
+                rooms.get(seated.remove(random.nextInt(seated.size()))).mPlayers --;
+            }
+
+            long start = System.nanoTime();
+            Matchmaker.Placement placement = matchmaker.place(bucket(random), start);
+            placing += System.nanoTime() - start;
+
+            if (placement == null)
+            {
+                unplaced ++;
+            }
+            else
+            {
+                rooms.computeIfAbsent(placement.getRoom(),
+                        r -> new Room(placement.getHost(), placement.getBucket()))
+                        .mPlayers ++;
+                seated.add(placement.getRoom());
+            }
+
+            if (i % REPORT_EVERY == REPORT_EVERY - 1)
+            {
+                long now = System.nanoTime();
+                rooms.forEach((name, room) ->
+                        matchmaker.onReport(room.mHost, name, room.mBucket, room.mPlayers, now));
+            }
+        }
+
+        System.out.println(String.format("%d joins, %d hosts: %.0f placements/s (%.2f us each)",
+                players, hosts, players * 1e9 / placing, placing / 1e3 / players));
+        System.out.println(String.format("%d seated, %d unplaced, %d rooms (%.0f%% full)",
+                seated.size(), unplaced, rooms.size(),
+                100.0 * seated.size() / (rooms.size() * (double) Matchmaker.ROOM_CAPACITY)));
+        print(matchmaker.getHosts());
+    }
+
+    private static int bucket(Random random)
+    {
+        double value = random.nextDouble();
+
+        for (int i = 0; i < BUCKETS.length - 1; i ++)
+        {
+            value -= BUCKETS[i];
+
+            if (value < 0)
+            {
+                return i;
+            }
+        }
+
+        return BUCKETS.length - 1;
+    }
+
+    /**
+     * Spread of the players over hosts.
+     */
+    private static void print(Collection<Integer> loads)
+    {
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        double sum = 0;
+        double squares = 0;
+
+        for (int load : loads)
+        {
+            min = Math.min(min, load);
+            max = Math.max(max, load);
+            sum += load;
+            squares += (double) load * load;
+        }
+
+        double mean = sum / loads.size();
+        System.out.println(String.format("host load: min %d, max %d, mean %.1f, stddev %.1f",
+                min, max, mean, Math.sqrt(squares / loads.size() - mean * mean)));
+    }
+}
@@ -0,0 +1,62 @@
+package eagea.nodeio.desktop;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.ObjectName;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.metrics.Metrics;
+
+/**
+ * Expose the metrics snapshots through JMX (e.g. with jconsole), under
+ * "eagea.nodeio:type=Metrics".
+ */
+public class MetricsJmx implements MetricsMXBean
+{
+    private static final String OBJECT_NAME = "eagea.nodeio:type=Metrics";
+
+    /**
+     * Register the bean in the platform MBean server.
+     */
+    public static void register()
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsJmx(),
+                    new ObjectName(OBJECT_NAME));
+        }
+        catch (Exception e)
+        {
+            Log.error(Log.Category.APP, "metrics JMX registration", e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters()
+    {
+        return Metrics.getCounters();
+    }
+
+    @Override
+    public Map<String, Long> getGauges()
+    {
+        return Metrics.getGauges();
+    }
+
+    @Override
+    public Map<String, String> getHistograms()
+    {
+        Map<String, String> result = new TreeMap<>();
+        Metrics.getHistograms().forEach((n, s) -> result.put(n, s.toString()));
+
+        return result;
+    }
+
+    @Override
+    public String dump()
+    {
+        return Metrics.dump();
+    }
+}
@@ -0,0 +1,17 @@
+package eagea.nodeio.desktop;
+
+import java.util.Map;
+
+/**
+ * JMX view of the core metrics registry (see eagea.nodeio.metrics.Metrics).
+ */
+public interface MetricsMXBean
+{
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getGauges();
+
+    Map<String, String> getHistograms();
+
+    String dump();
+}
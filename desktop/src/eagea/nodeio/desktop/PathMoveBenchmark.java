@@ -0,0 +1,163 @@
+package eagea.nodeio.desktop;
+
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import eagea.nodeio.metrics.Metrics;
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.logic.Dice;
+import eagea.nodeio.model.logic.map.MapM;
+import eagea.nodeio.model.logic.map.PathFinder;
+import eagea.nodeio.model.logic.map.ZoneM;
+import eagea.nodeio.model.logic.player.PlayerM;
+import eagea.nodeio.model.rabbitmq.action.Action;
+import eagea.nodeio.model.rabbitmq.action.Connection;
+import eagea.nodeio.model.rabbitmq.action.Move;
+import eagea.nodeio.model.rabbitmq.action.PathMove;
+import eagea.nodeio.model.rabbitmq.action.PathStep;
+
+/**
+ * Walk the players of an offline host to random cells, in rounds, first with
+ * a move request per cell, then with a path request per walk (see PathMove):
+ * "PathMoveBenchmark [players] [rounds]".
+ * Print the messages (requests and broadcasts) per cell travelled.
+ */
+public class PathMoveBenchmark
+{
+    public static void main(String[] args)
+    {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        print("per step", runSteps(players, rounds));
+        print("path", runPaths(players, rounds));
+        System.exit(0);
+    }
+
+    /**
+     * Each player asks for the moves of the path it found itself.
+     * @return the messages and the cells travelled.
+     */
+    private static long[] runSteps(int players, int rounds)
+    {
+        Model model = start(players);
+        Random random = new Random(42);
+        long messages = 0;
+        long cells = 0;
+
+        for (int round = 0; round < rounds; round ++)
+        {
+            HashMap<String, PathFinder.Path> paths = new HashMap<>();
+
+            for (PlayerM player : model.getPlayers().getPlayers())
+            {
+                PathFinder.Path path = PathFinder.find(model.getMap(),
+                        player.getMapPosition(), pickCell(model, random), getOccupied(model));
+
+                if (path != null)
+                {
+                    paths.put(player.getID(), path);
+                }
+            }
+            // Walk together, a cell each in turn.
+            while (! paths.isEmpty())
+            {
+                for (String ID : new ArrayList<>(paths.keySet()))
+                {
+                    PathFinder.Path path = paths.get(ID);
+                    Action result = model.check(new Move(ID, path.poll()));
+                    // The request, then its broadcast.
+                    messages += result == null ? 1 : 2;
+                    cells += result == null || result.isRejected() ? 0 : 1;
+
+                    if (path.getLength() == 0)
+                    {
+                        paths.remove(ID);
+                    }
+                }
+            }
+        }
+
+        return new long[] { messages, cells };
+    }
+
+    /**
+     * Each player asks the host for its path, and the host sends the moves.
+     * @return the messages and the cells travelled.
+     */
+    private static long[] runPaths(int players, int rounds)
+    {
+        Model model = start(players);
+        Random random = new Random(42);
+        long broadcasts = Metrics.histogram("node.sendToPlayers.bytes").snapshot().getCount();
+        long steps = Metrics.counter("path.steps").get();
+        long messages = 0;
+
+        for (int round = 0; round < rounds; round ++)
+        {
+            for (PlayerM player : model.getPlayers().getPlayers())
+            {
+                Vector2 cell = pickCell(model, random);
+                Action result = model.check(new PathMove(player.getID(),
+                        (int) cell.x, (int) cell.y));
+                // The request, then its first step.
+                messages += result == null ? 1 : 2;
+            }
+            // The host pace (see Node.onPathTick).
+            while (model.hasPaths())
+            {
+                model.check(new PathStep("host"));
+            }
+        }
+
+        messages += Metrics.histogram("node.sendToPlayers.bytes").snapshot().getCount()
+                - broadcasts;
+
+        return new long[] { messages, Metrics.counter("path.steps").get() - steps };
+    }
+
+    private static Model start(int players)
+    {
+        // Same game each time.
+        Dice.setSeed(42);
+        Model model = new Model(null);
+        model.goToReplay("host", null, null);
+
+        for (int i = 0; i < players; i ++)
+        {
+            model.check(new Connection("player-" + i));
+        }
+
+        return model;
+    }
+
+    private static Vector2 pickCell(Model model, Random random)
+    {
+        int zone = random.nextInt(model.getMap().getNbZones());
+
+        return new Vector2((zone / MapM.ZONE_LINE) * ZoneM.SIZE + random.nextInt(ZoneM.SIZE),
+                (zone % MapM.ZONE_LINE) * ZoneM.SIZE + random.nextInt(ZoneM.SIZE));
+    }
+
+    private static HashSet<Integer> getOccupied(Model model)
+    {
+        HashSet<Integer> occupied = new HashSet<>();
+
+        for (PlayerM player : model.getPlayers().getPlayers())
+        {
+            Vector2 position = player.getMapPosition();
+            occupied.add(PathFinder.getCell((int) position.x, (int) position.y));
+        }
+
+        return occupied;
+    }
+
+    private static void print(String protocol, long[] result)
+    {
+        System.out.println(String.format("%s: %d messages, %d cells, %.2f messages/cell",
+                protocol, result[0], result[1], result[0] / (double) Math.max(1, result[1])));
+    }
+}
@@ -0,0 +1,27 @@
+package eagea.nodeio.desktop;
+
+import eagea.nodeio.model.rabbitmq.Replay;
+
+/**
+ * Replay a host capture (recorded with -Dnodeio.capture=[file]):
+ * "ReplayLauncher [file] [--paced]".
+ * Print the throughput, and exit with an error if the final state differs
+ * from the recorded one.
+ */
+public class ReplayLauncher
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: ReplayLauncher [file] [--paced]");
+            System.exit(2);
+        }
+
+        boolean paced = args.length > 1 && args[1].equals("--paced");
+        Replay.Result result = Replay.run(args[0], paced);
+        System.out.println(result);
+
+        System.exit(result.isMatching() ? 0 : 1);
+    }
+}
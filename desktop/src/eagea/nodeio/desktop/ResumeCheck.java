@@ -0,0 +1,74 @@
+package eagea.nodeio.desktop;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.util.ArrayList;
+
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.logic.Dice;
+import eagea.nodeio.model.logic.player.PlayerM;
+import eagea.nodeio.model.rabbitmq.Codec;
+import eagea.nodeio.model.rabbitmq.action.Action;
+import eagea.nodeio.model.rabbitmq.action.Connection;
+import eagea.nodeio.model.rabbitmq.action.Move;
+import eagea.nodeio.model.rabbitmq.action.Resume;
+
+/**
+ * Resume a paused player of an offline host (see Model.playResume), with
+ * actions received while waiting for the response: some among the missed
+ * ones, and one broadcast after they were gathered but before the response.
+ * Exit with an error if the player does not end up in the host state.
+ */
+public class ResumeCheck
+{
+    private static final String HOST = "host";
+
+    private static long mRank;
+
+    public static void main(String[] args) throws Exception
+    {
+        Dice.setSeed(42);
+        Model host = new Model(null);
+        host.goToReplay(HOST, null, null);
+        broadcast(host.check(new Connection("player-0")));
+        broadcast(host.check(new Connection("player-1")));
+        // player-0 pauses here.
+        Model player = new Model(null);
+        player.goToResuming("player-0",
+                SerializationUtils.clone(host.getMap()),
+                SerializationUtils.clone(host.getPlayers()),
+                HOST, mRank);
+        // Broadcast meanwhile, and missed.
+        ArrayList<Action> missed = new ArrayList<>();
+        missed.add(broadcast(host.check(new Move("player-1", PlayerM.Event.UP))));
+        Action connection = broadcast(host.check(new Connection("player-2")));
+        missed.add(connection);
+        // Broadcast once the missed ones are gathered, before the response.
+        Action move = broadcast(host.check(new Move("player-1", PlayerM.Event.DOWN)));
+        // Received on the new queue before the response.
+        player.play(connection);
+        player.play(move);
+        player.play(broadcast(new Resume("player-0", missed)));
+        // Then as usual.
+        player.play(broadcast(host.check(new Move("player-2", PlayerM.Event.LEFT))));
+
+        boolean ok = player.hashState() == host.hashState()
+                && player.getMap().getNbZones() == host.getMap().getNbZones()
+                && player.getPlayers().getNbPlayers() == host.getPlayers().getNbPlayers();
+        System.out.println(String.format("player: %d zones, %d players; host: %d zones, %d players",
+                player.getMap().getNbZones(), player.getPlayers().getNbPlayers(),
+                host.getMap().getNbZones(), host.getPlayers().getNbPlayers()));
+        System.out.println(ok ? "OK" : "player state differs from the host");
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Same as Node.publish: rank the action, then send it through the wire.
+     */
+    private static Action broadcast(Action action) throws Exception
+    {
+        action.setBroadcast(HOST, ++ mRank);
+        Codec.Message message = Codec.encode(action);
+        return Codec.decode(message.getBody(), Codec.isDeflated(message.getProperties()));
+    }
+}
@@ -0,0 +1,73 @@
+package eagea.nodeio.desktop;
+
+import java.io.File;
+
+import eagea.nodeio.log.Log;
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.journal.Journal;
+import eagea.nodeio.model.matchmaking.MatchmakerService;
+import eagea.nodeio.model.matchmaking.RoomServer;
+import eagea.nodeio.model.rabbitmq.Node;
+
+/**
+ * Run a headless host: it validates the actions of the players without
+ * playing itself, and journals them in the "nodeio.journal" directory so
+ * that a restarted server resumes the game where the crashed one left it.
+ * With "--standby", it only mirrors the running host and takes over
+ * when it fails (see Model.goToStandby).
+ * The room is given by the "nodeio.room" system property; run one process
+ * per room to host several of them.
+ * With "--rooms", it rather hosts the rooms the matchmaker opens, and with
+ * "--matchmaker" it is the matchmaker (see MatchmakerService).
+ */
+public class ServerLauncher
+{
+    public static void main(String[] args) throws Exception
+    {
+        MetricsJmx.register();
+
+        String room = Node.DEFAULT_ROOM;
+
+        if (args.length > 0 && args[0].equals("--matchmaker"))
+        {
+            MatchmakerService matchmaker = new MatchmakerService();
+            matchmaker.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(matchmaker::close));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--rooms"))
+        {
+            RoomServer server = new RoomServer(new File(System.getProperty("nodeio.journal", "journal")));
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--standby"))
+        {
+            Model model = new Model(null);
+            model.setRoom(room);
+            model.goToStandby();
+            Runtime.getRuntime().addShutdownHook(new Thread(model::shutDownHook));
+            return;
+        }
+
+        Journal journal = new Journal(new File(System.getProperty("nodeio.journal", "journal"), room));
+        Model model = new Model(null);
+        model.setRoom(room);
+
+        if (! model.goToServer(journal))
+        {
+            Log.flush();
+            System.exit(-1);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                {
+                    model.shutDownHook();
+                    journal.close();
+                }
+        ));
+    }
+}
@@ -0,0 +1,121 @@
+package eagea.nodeio.desktop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import eagea.nodeio.model.Model;
+import eagea.nodeio.model.logic.Dice;
+import eagea.nodeio.model.logic.player.PlayerM;
+import eagea.nodeio.model.rabbitmq.action.Action;
+import eagea.nodeio.model.rabbitmq.action.Catch;
+import eagea.nodeio.model.rabbitmq.action.Connection;
+import eagea.nodeio.model.rabbitmq.action.Move;
+import eagea.nodeio.model.rabbitmq.action.Speak;
+
+/**
+ * Generate requests of many players (mostly moves) for an offline host, and
+ * check them with 1, 2, 4... threads, like a host with the
+ * "nodeio.host.workers" property (see Node.onHostWork):
+ * "ValidationBenchmark [players] [requests] [max threads]".
+ * Print the throughput for each number of threads.
+ */
+public class ValidationBenchmark
+{
+    // Share of the requests which are not moves.
+    private static final double SPEAKS = 0.05;
+    private static final double CATCHES = 0.01;
+
+    public static void main(String[] args) throws Exception
+    {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        // Warm up.
+        run(players, requests, maxThreads);
+        run(players, requests, 1);
+        double base = 0;
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            double throughput = run(players, requests, threads);
+            base = base == 0 ? throughput : base;
+            System.out.println(String.format("%d thread(s): %.0f requests/s (x%.2f)",
+                    threads, throughput, throughput / base));
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * @return the requests checked per second.
+     */
+    private static double run(int players, int requests, int threads) throws Exception
+    {
+        // Same game and requests each time.
+        Dice.setSeed(42);
+        Random random = new Random(42);
+        Model model = new Model(null);
+        model.goToReplay("host", null, null);
+
+        for (int i = 0; i < players; i ++)
+        {
+            model.check(new Connection("player-" + i));
+        }
+
+        List<Action> actions = new ArrayList<>(requests);
+
+        for (int i = 0; i < requests; i ++)
+        {
+            String ID = "player-" + random.nextInt(players);
+            double type = random.nextDouble();
+
+            if (type < CATCHES)
+            {
+                actions.add(new Catch(ID));
+            }
+            else if (type < CATCHES + SPEAKS)
+            {
+                actions.add(new Speak(ID, PlayerM.Speak.HELLO));
+            }
+            else
+            {
+                actions.add(new Move(ID, PlayerM.Event.values()[
+                        random.nextInt(PlayerM.Event.values().length)]));
+            }
+        }
+        // A thread per player, as the host does.
+        ExecutorService[] validators = new ExecutorService[threads];
+
+        for (int i = 0; i < threads; i ++)
+        {
+            validators[i] = Executors.newSingleThreadExecutor();
+        }
+
+        CountDownLatch done = new CountDownLatch(requests);
+        long start = System.nanoTime();
+
+        for (Action action : actions)
+        {
+            validators[Math.floorMod(action.getPlayer().hashCode(), threads)].execute(() ->
+                    {
+                        model.check(action);
+                        done.countDown();
+                    }
+            );
+        }
+
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        for (ExecutorService validator : validators)
+        {
+            validator.shutdown();
+        }
+
+        return requests * 1e9 / elapsed;
+    }
+}